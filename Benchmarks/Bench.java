@@ -0,0 +1,95 @@
+import java.lang.management.ManagementFactory;
+
+import static java.lang.String.format;
+
+// Minimal microbenchmark runner in the spirit of JMH. Each benchmark is warmed up, then timed over
+// several fixed length iterations. The rate of operations and the bytes allocated by each operation
+// are reported, measured on the benchmark thread
+public class Bench {
+    // Work done by one operation of a benchmark. Its result is kept so the work cannot be optimized away
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    public static int warmupIterations = 3;
+    public static int iterations = 5;
+    public static long iterationMillis = 500;
+    // Only benchmarks whose name contains the filter are run
+    public static String filter = "";
+
+    private static volatile Object sink;
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Read the options -wi (warmup iterations), -i (iterations), -t (milliseconds per iteration), and
+    // a filter on the benchmark names
+    public static void parseArgs(String[] args){
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "-wi":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    filter = args[i];
+            }
+        }
+    }
+
+    public static void printHeader(){
+        System.out.println(format("%-22s %-34s %14s %10s %14s", "Benchmark", "Params", "ops/s", "error", "B/op"));
+    }
+
+    // Run a benchmark and print its mean rate, the standard deviation of the rate across iterations,
+    // and the mean bytes allocated per operation
+    public static void run(String name, String params, Op op) throws Exception{
+        if (!name.contains(filter)){
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++){
+            iteration(op);
+        }
+        double[] rates = new double[iterations];
+        double totalBytes = 0;
+        long totalOps = 0;
+        for (int i = 0; i < iterations; i++){
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = iteration(op);
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalOps += ops;
+            rates[i] = ops / (elapsed / 1e9);
+        }
+        double mean = 0;
+        for (int i = 0; i < rates.length; i++){
+            mean += rates[i] / rates.length;
+        }
+        double var = 0;
+        for (int i = 0; i < rates.length; i++){
+            var += (rates[i] - mean) * (rates[i] - mean) / Math.max(1, rates.length - 1);
+        }
+        System.out.println(format("%-22s %-34s %14.1f %10.1f %14.0f", name, params, mean, Math.sqrt(var),
+                totalBytes / totalOps));
+    }
+
+    // Run the operation repeatedly for the length of one iteration and return how many times it ran
+    private static long iteration(Op op) throws Exception{
+        long end = System.nanoTime() + iterationMillis * 1000000;
+        long ops = 0;
+        do {
+            sink = op.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static long allocatedBytes(){
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
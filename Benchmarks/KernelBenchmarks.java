@@ -0,0 +1,152 @@
+import Sequential.Layers.Layer;
+import Sequential.Layers.MaxPool;
+import Sequential.Layers.SoftMaxLayer;
+import Sequential.Layers.TrainableLayer.ConvLayer;
+import Sequential.Layers.TrainableLayer.DenseLayer;
+import Sequential.LossFunctions.MeanSquaredError;
+import Sequential.MatMulBackends.BlockedBackend;
+import Sequential.MatMulBackends.EjmlBackend;
+import Sequential.MatMulBackends.MatMulBackend;
+import Sequential.MatMulBackends.SimpleMatrixBackend;
+import Sequential.Optimizers.Adam;
+import Sequential.Sequential;
+import Sequential.Util.NetUtil;
+import Sequential.Util.Tensor;
+
+import java.util.Random;
+
+// Benchmarks of the kernels and layers the network spends its time in. Run with
+//      java -cp <classpath> KernelBenchmarks [-wi warmups] [-i iterations] [-t millis] [name filter]
+// and compare the results before and after a change to NetUtil, a layer, or an optimizer
+public class KernelBenchmarks {
+    private static final int BATCH_SIZE = 32;
+    private static Random rand = new Random(0);
+
+    public static void main(String[] args) throws Exception{
+        Bench.parseArgs(args);
+        Bench.printHeader();
+        matMult();
+        conv();
+        maxPool();
+        softMax();
+        dense();
+        adam();
+    }
+
+    // NetUtil.matMult and each backend on square matrices
+    private static void matMult() throws Exception{
+        int[] sizes = {64, 128, 256};
+        MatMulBackend[] backends = {new EjmlBackend(), new BlockedBackend(), new SimpleMatrixBackend()};
+        for (int i = 0; i < sizes.length; i++){
+            final int n = sizes[i];
+            final Tensor a = random(n, n);
+            final Tensor b = random(n, n);
+            final Tensor out = new Tensor(n, n);
+            Bench.run("netUtil.matMult", "n=" + n, new Bench.Op() {
+                public Object run() throws Exception{
+                    return NetUtil.matMult(a, b);
+                }
+            });
+            for (int j = 0; j < backends.length; j++){
+                final MatMulBackend backend = backends[j];
+                Bench.run("backend.matMult", backend.getClass().getSimpleName() + " n=" + n, new Bench.Op() {
+                    public Object run() throws Exception{
+                        backend.matMult(a, b, out);
+                        return out;
+                    }
+                });
+            }
+        }
+    }
+
+    // Convolution forward and backward at several geometries: {depth, height, width, filters, filter size, stride}
+    private static void conv() throws Exception{
+        int[][] geometries = {{1, 28, 28, 8, 3, 1}, {8, 14, 14, 16, 3, 1}, {3, 32, 32, 16, 5, 2}};
+        for (int i = 0; i < geometries.length; i++){
+            int[] g = geometries[i];
+            int[] inDim = {g[0], g[1], g[2]};
+            ConvLayer layer = new ConvLayer(g[3], new int[]{g[4], g[4]}, inDim, new int[]{g[5], g[5]});
+            String params = g[0] + "x" + g[1] + "x" + g[2] + " f=" + g[3] + " k=" + g[4] + " s=" + g[5];
+            layerBenchmarks("conv", params, layer, inDim);
+        }
+    }
+
+    // Max pooling forward and backward, with and without overlapping windows: {depth, height, width, pool, stride}
+    private static void maxPool() throws Exception{
+        int[][] geometries = {{8, 24, 24, 2, 2}, {16, 12, 12, 3, 1}};
+        for (int i = 0; i < geometries.length; i++){
+            int[] g = geometries[i];
+            int[] inDim = {g[0], g[1], g[2]};
+            MaxPool layer = new MaxPool(new int[]{g[3], g[3]}, inDim, new int[]{g[4], g[4]});
+            String params = g[0] + "x" + g[1] + "x" + g[2] + " p=" + g[3] + " s=" + g[4];
+            layerBenchmarks("maxPool", params, layer, inDim);
+        }
+    }
+
+    // Softmax forward and backward without the cross entropy fusion
+    private static void softMax() throws Exception{
+        int[] sizes = {10, 1000};
+        for (int i = 0; i < sizes.length; i++){
+            int[] inDim = {1, 1, sizes[i]};
+            layerBenchmarks("softMax", "n=" + sizes[i], new SoftMaxLayer(inDim), inDim);
+        }
+    }
+
+    // Dense forward and backward: {inputs, nodes}
+    private static void dense() throws Exception{
+        int[][] shapes = {{784, 128}, {128, 10}};
+        for (int i = 0; i < shapes.length; i++){
+            int[] inDim = {1, 1, shapes[i][0]};
+            layerBenchmarks("dense", shapes[i][0] + "->" + shapes[i][1], new DenseLayer(shapes[i][1], inDim), inDim);
+        }
+    }
+
+    // One adam update over every parameter of a stack of dense layers
+    private static void adam() throws Exception{
+        int[] widths = {100, 1000};
+        for (int i = 0; i < widths.length; i++){
+            int n = widths[i];
+            Sequential net = new Sequential();
+            net.addDense(n, new int[]{1, 1, n}, null);
+            net.addDense(n, null, null);
+            final Adam opt = new Adam();
+            net.compile(new MeanSquaredError(), opt, new String[0]);
+            opt.constructOptimizer(net);
+            Tensor x = random(BATCH_SIZE, n);
+            net.forwardBatchPass(x);
+            net.backwardBatchPass(net.getLossJacobian(random(BATCH_SIZE, n)), x);
+            Bench.run("adam.update", "params=" + opt.getParameterStore().numParams(), new Bench.Op() {
+                public Object run() throws Exception{
+                    opt.applyGradients(0);
+                    return opt;
+                }
+            });
+        }
+    }
+
+    // Benchmark a batch passing forward through a layer, and its gradients passing backward
+    private static void layerBenchmarks(String name, String params, final Layer layer, int[] inDim) throws Exception{
+        final Tensor in = random(BATCH_SIZE, inDim[0] * inDim[1] * inDim[2]);
+        int[] outDim = layer.getOutDim();
+        final Tensor jacob = random(BATCH_SIZE, outDim[0] * outDim[1] * outDim[2]);
+        Bench.run(name + ".forward", params, new Bench.Op() {
+            public Object run() throws Exception{
+                return layer.forwardBatchPass(in);
+            }
+        });
+        layer.forwardBatchPass(in);
+        Bench.run(name + ".backward", params, new Bench.Op() {
+            public Object run() throws Exception{
+                return layer.computeGradients(jacob, in);
+            }
+        });
+    }
+
+    private static Tensor random(int rows, int cols){
+        Tensor ret = new Tensor(rows, cols);
+        for (int i = 0; i < ret.size(); i++){
+            ret.setFlat(i, rand.nextDouble() * 2 - 1);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,250 @@
+import Sequential.Data.ArrayDataset;
+import Sequential.LossFunctions.CrossEntropy;
+import Sequential.Optimizers.Adam;
+import Sequential.Sequential;
+import Sequential.Util.BatchIterator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import static java.lang.String.format;
+
+// End to end training benchmark. Reference architectures are trained on seeded synthetic data sets
+// shaped like MNIST (1x28x28) and CIFAR (3x32x32) for a fixed number of batches per epoch, and the
+// throughput, time of each epoch, peak heap, and bytes allocated per sample are printed as JSON. Run with
+//      java -cp <classpath> TrainingBenchmarks [-b batches] [-bs batch size] [-e epochs] [-w warmup epochs]
+//          [-t thread counts, such as 1,2,4] [model filter]
+public class TrainingBenchmarks {
+    private static int numBatches = 20;
+    private static int batchSize = 32;
+    private static int epochs = 3;
+    private static int warmupEpochs = 1;
+    private static int[] threadCounts = {1};
+    private static String filter = "";
+
+    // Builds an uncompiled reference architecture
+    private interface Model {
+        Sequential build() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception{
+        parseArgs(args);
+        int[] mnist = {1, 28, 28};
+        int[] cifar = {3, 32, 32};
+        StringBuilder results = new StringBuilder();
+        results.append(benchmark("mnist-mlp", mnist, new Model() {
+            public Sequential build() throws Exception{
+                Sequential net = new Sequential();
+                net.addDense(128, mnist, "relu");
+                net.addDense(10, null, "softmax");
+                return net;
+            }
+        }));
+        results.append(benchmark("mnist-cnn", mnist, new Model() {
+            public Sequential build() throws Exception{
+                Sequential net = new Sequential();
+                net.addConv(8, new int[]{3, 3}, mnist, new int[]{1, 1}, "relu");
+                net.addMaxPool(new int[]{2, 2}, null, new int[]{2, 2});
+                net.addDense(10, null, "softmax");
+                return net;
+            }
+        }));
+        results.append(benchmark("cifar-cnn", cifar, new Model() {
+            public Sequential build() throws Exception{
+                Sequential net = new Sequential();
+                net.addConv(16, new int[]{5, 5}, cifar, new int[]{1, 1}, "relu");
+                net.addMaxPool(new int[]{2, 2}, null, new int[]{2, 2});
+                net.addConv(32, new int[]{3, 3}, null, new int[]{1, 1}, "relu");
+                net.addMaxPool(new int[]{2, 2}, null, new int[]{2, 2});
+                net.addDense(64, null, "relu");
+                net.addDense(10, null, "softmax");
+                return net;
+            }
+        }));
+        if (results.length() > 0){
+            results.setLength(results.length() - 2);
+        }
+        System.out.println("{");
+        System.out.println(format("  \"jvm\": \"%s\",", System.getProperty("java.vm.version")));
+        System.out.println(format("  \"processors\": %d,", Runtime.getRuntime().availableProcessors()));
+        System.out.println(format("  \"batchSize\": %d,", batchSize));
+        System.out.println(format("  \"batchesPerEpoch\": %d,", numBatches));
+        System.out.println(format("  \"epochs\": %d,", epochs));
+        System.out.println("  \"results\": [");
+        System.out.println(results);
+        System.out.println("  ]");
+        System.out.println("}");
+    }
+
+    // Read the options and the filter on the model names
+    private static void parseArgs(String[] args){
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "-b":
+                    numBatches = Integer.parseInt(args[++i]);
+                    break;
+                case "-bs":
+                    batchSize = Integer.parseInt(args[++i]);
+                    break;
+                case "-e":
+                    epochs = Integer.parseInt(args[++i]);
+                    break;
+                case "-w":
+                    warmupEpochs = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    String[] counts = args[++i].split(",");
+                    threadCounts = new int[counts.length];
+                    for (int j = 0; j < counts.length; j++){
+                        threadCounts[j] = Integer.parseInt(counts[j].trim());
+                    }
+                    break;
+                default:
+                    filter = args[i];
+            }
+        }
+    }
+
+    // Train a fresh copy of the model with each thread count and return a JSON object for each run
+    private static String benchmark(String name, int[] inDim, Model model) throws Exception{
+        if (!name.contains(filter)){
+            return "";
+        }
+        ArrayDataset data = syntheticData(inDim, numBatches * batchSize, name.hashCode());
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < threadCounts.length; t++){
+            Sequential net = model.build();
+            Adam opt = new Adam();
+            opt.setNumThreads(threadCounts[t]);
+            net.compile(new CrossEntropy(), opt, new String[]{"accuracy"});
+            BatchIterator batches = new BatchIterator(data, batchSize, true);
+            batches.setSeed(0);
+
+            PrintStream out = System.out;
+            // Keep the progress bars out of the JSON
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Sampler sampler = null;
+            double[] epochSeconds = new double[epochs];
+            try {
+                for (int i = 0; i < warmupEpochs; i++){
+                    net.fit(batches, 1);
+                }
+                System.gc();
+                // Start counting only now so that neither the warmup nor its garbage is measured
+                sampler = new Sampler();
+                sampler.start();
+                for (int i = 0; i < epochs; i++){
+                    long start = System.nanoTime();
+                    net.fit(batches, 1);
+                    epochSeconds[i] = (System.nanoTime() - start) / 1e9;
+                }
+            } finally {
+                if (sampler != null){
+                    sampler.finish();
+                }
+                System.setOut(out);
+            }
+
+            double totalSeconds = 0;
+            for (int i = 0; i < epochs; i++){
+                totalSeconds += epochSeconds[i];
+            }
+            long samples = (long) epochs * numBatches * batchSize;
+            sb.append("    {");
+            sb.append(format("\"model\": \"%s\", ", name));
+            sb.append(format("\"inDim\": [%d, %d, %d], ", inDim[0], inDim[1], inDim[2]));
+            sb.append(format("\"threads\": %d, ", threadCounts[t]));
+            sb.append(format(Locale.ROOT, "\"samplesPerSec\": %.1f, ", samples / totalSeconds));
+            sb.append("\"epochSeconds\": [");
+            for (int i = 0; i < epochs; i++){
+                sb.append(format(Locale.ROOT, i == 0 ? "%.4f" : ", %.4f", epochSeconds[i]));
+            }
+            sb.append("], ");
+            sb.append(format("\"peakHeapBytes\": %d, ", sampler.peakHeap));
+            sb.append(format(Locale.ROOT, "\"allocatedBytesPerSample\": %.0f", sampler.allocated / (double) samples));
+            sb.append("},\n");
+        }
+        return sb.toString();
+    }
+
+    // Make a seeded data set of the given number of examples. Each example belongs to a random one of 10
+    // classes and its values are noise plus a brightness that depends on its class, so the task can be learned
+    private static ArrayDataset syntheticData(int[] inDim, int numExamples, long seed) throws Exception{
+        Random rand = new Random(seed);
+        double[][][][] x = new double[numExamples][inDim[0]][inDim[1]][inDim[2]];
+        double[][] y = new double[numExamples][10];
+        for (int n = 0; n < numExamples; n++){
+            int c = rand.nextInt(10);
+            y[n][c] = 1;
+            for (int d = 0; d < inDim[0]; d++){
+                for (int i = 0; i < inDim[1]; i++){
+                    for (int j = 0; j < inDim[2]; j++){
+                        x[n][d][i][j] = 0.5 * rand.nextDouble() + 0.05 * c;
+                    }
+                }
+            }
+        }
+        return new ArrayDataset(x, y);
+    }
+
+    // Samples the heap and the bytes allocated by every thread on a background thread. Threads that train
+    // alongside the main thread exit at the end of each epoch, so the bytes they allocate are taken from the
+    // last sample before they exit, and the peak heap is the largest heap seen in any sample
+    private static class Sampler extends Thread {
+        private static final long INTERVAL_MILLIS = 1;
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        // Bytes each thread had allocated when the sampler started, and when it was last sampled
+        private final HashMap<Long, Long> startBytes = new HashMap<Long, Long>();
+        private final HashMap<Long, Long> lastBytes = new HashMap<Long, Long>();
+        private volatile boolean running = true;
+        long peakHeap;
+        long allocated;
+
+        Sampler(){
+            super("TrainingBenchmarks-Sampler");
+            setDaemon(true);
+            sample(startBytes);
+        }
+
+        @Override
+        public void run(){
+            while (running){
+                sample(lastBytes);
+                try {
+                    Thread.sleep(INTERVAL_MILLIS);
+                } catch (InterruptedException e){
+                    return;
+                }
+            }
+        }
+
+        // Stop sampling and total the bytes allocated since the sampler started
+        void finish() throws InterruptedException{
+            running = false;
+            join();
+            sample(lastBytes);
+            for (Long id : lastBytes.keySet()){
+                Long start = startBytes.get(id);
+                allocated += lastBytes.get(id) - (start == null ? 0 : start);
+            }
+        }
+
+        private synchronized void sample(HashMap<Long, Long> bytes){
+            long[] ids = threads.getAllThreadIds();
+            long[] allocations = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++){
+                if (allocations[i] >= 0 && ids[i] != getId()){
+                    bytes.put(ids[i], allocations[i]);
+                }
+            }
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// Minimal test runner for the classes in this folder. Each test is run on its own, failures are printed
+// with their cause, and the process exits with a failing status if any test failed
+public class Check {
+    // Body of one test, which fails by throwing
+    public interface Test {
+        void run() throws Exception;
+    }
+
+    private static int failures = 0;
+
+    // Run the test with the given name and print whether it passed
+    public static void run(String name, Test test){
+        try {
+            test.run();
+            System.out.println("PASS " + name);
+        } catch (Throwable e){
+            failures++;
+            System.out.println("FAIL " + name + ": " + e);
+        }
+    }
+
+    // Fail the running test with the given message if the condition does not hold
+    public static void isTrue(boolean condition, String message){
+        if (!condition){
+            throw new AssertionError(message);
+        }
+    }
+
+    // Fail the running test if the two values differ by more than the tolerance
+    public static void close(double expected, double actual, double tolerance, String message){
+        if (!(Math.abs(expected - actual) <= tolerance)){
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    // Exit with a failing status if any test failed
+    public static void finish(){
+        if (failures > 0){
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import Sequential.Layers.TrainableLayer.ConvLayer;
+import Sequential.Util.Tensor;
+
+import java.util.Random;
+
+// Tests of the convolutional layer against a direct convolution
+public class ConvLayerTest {
+    public static void main(String[] args){
+        // A stride that does not divide the filter maps some inputs to more windows than filter / stride
+        Check.run("stridesNotDividingTheFilter", () -> matchesDirectConvolution(2, 11, 12, 3, 5, 5, 2, 2));
+        Check.run("unitStride", () -> matchesDirectConvolution(1, 8, 8, 2, 3, 3, 1, 1));
+        Check.run("unevenStrides", () -> matchesDirectConvolution(3, 9, 10, 2, 4, 3, 3, 2));
+        Check.finish();
+    }
+
+    // Pass a random batch forward and backward through a layer of the given geometry and compare its outputs,
+    // input gradients, and filter gradients to those of a direct convolution
+    static void matchesDirectConvolution(int depth, int height, int width, int numFilters, int filterHeight,
+                                         int filterWidth, int vertStride, int horStride) throws Exception{
+        ConvLayer layer = new ConvLayer(numFilters, new int[]{filterHeight, filterWidth},
+                new int[]{depth, height, width}, new int[]{vertStride, horStride});
+        int[] outDim = layer.getOutDim();
+        int inSize = depth * height * width;
+        int outSize = outDim[0] * outDim[1] * outDim[2];
+        int batchSize = 3;
+        Random rand = new Random(1);
+        Tensor filters = layer.getParams();
+        // Give the biases values so that they are checked too
+        for (int f = 0; f < numFilters; f++){
+            filters.set(filters.getDim(0) - 1, f, rand.nextGaussian());
+        }
+        Tensor in = random(rand, batchSize, inSize);
+        Tensor jacob = random(rand, batchSize, outSize);
+
+        Tensor out = layer.forwardBatchPass(in);
+        Tensor inGrad = layer.computeGradients(jacob, in);
+        Tensor filterGrad = layer.getGradients();
+
+        double[][] expectedInGrad = new double[batchSize][inSize];
+        double[][] expectedFilterGrad = new double[filters.getDim(0)][numFilters];
+        for (int b = 0; b < batchSize; b++){
+            for (int oy = 0; oy < outDim[1]; oy++){
+                for (int ox = 0; ox < outDim[2]; ox++){
+                    // Outputs of each position are stored together, one per filter
+                    int pos = oy * outDim[2] + ox;
+                    for (int f = 0; f < numFilters; f++){
+                        double sum = filters.get(filters.getDim(0) - 1, f);
+                        double grad = jacob.get(b, pos * numFilters + f);
+                        for (int l = 0; l < depth; l++){
+                            for (int r = 0; r < filterHeight; r++){
+                                for (int c = 0; c < filterWidth; c++){
+                                    int i = l * height * width + (oy * vertStride + r) * width + ox * horStride + c;
+                                    int w = l * filterHeight * filterWidth + r * filterWidth + c;
+                                    sum += in.get(b, i) * filters.get(w, f);
+                                    expectedInGrad[b][i] += grad * filters.get(w, f);
+                                    expectedFilterGrad[w][f] += grad * in.get(b, i);
+                                }
+                            }
+                        }
+                        expectedFilterGrad[filters.getDim(0) - 1][f] += grad;
+                        Check.close(sum, out.get(b, pos * numFilters + f), 1e-9, "output " + b + " " + pos + " " + f);
+                    }
+                }
+            }
+        }
+        for (int b = 0; b < batchSize; b++){
+            for (int i = 0; i < inSize; i++){
+                Check.close(expectedInGrad[b][i], inGrad.get(b, i), 1e-9, "input gradient " + b + " " + i);
+            }
+        }
+        for (int w = 0; w < filters.getDim(0); w++){
+            for (int f = 0; f < numFilters; f++){
+                Check.close(expectedFilterGrad[w][f], filterGrad.get(w, f), 1e-9, "filter gradient " + w + " " + f);
+            }
+        }
+    }
+
+    static Tensor random(Random rand, int rows, int cols){
+        Tensor ret = new Tensor(rows, cols);
+        for (int i = 0; i < ret.size(); i++){
+            ret.setFlat(i, rand.nextGaussian());
+        }
+        return ret;
+    }
+}
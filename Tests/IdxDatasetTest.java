@@ -0,0 +1,58 @@
+import Sequential.Data.IdxDataset;
+import Sequential.Util.Tensor;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Tests of reading and normalizing IDX files
+public class IdxDatasetTest {
+    public static void main(String[] args){
+        Check.run("blankImagesNormalizeToZero", IdxDatasetTest::blankImagesNormalizeToZero);
+        Check.run("pixelsNormalizeToRange", IdxDatasetTest::pixelsNormalizeToRange);
+        Check.finish();
+    }
+
+    // Every pixel of a shard of all zero images has the same value, so there is no range to scale by
+    static void blankImagesNormalizeToZero() throws Exception{
+        Tensor x = readAll(new int[]{0, 0, 0, 0, 0, 0, 0, 0});
+        for (int i = 0; i < x.size(); i++){
+            Check.close(0, x.getFlat(i), 0, "pixel " + i);
+        }
+    }
+
+    static void pixelsNormalizeToRange() throws Exception{
+        Tensor x = readAll(new int[]{10, 20, 30, 50, 10, 10, 50, 40});
+        double[] expected = {0, 0.25, 0.5, 1, 0, 0, 1, 0.75};
+        for (int i = 0; i < x.size(); i++){
+            Check.close(expected[i], x.getFlat(i), 1e-12, "pixel " + i);
+        }
+    }
+
+    // Write two 2x2 images with the given pixels to IDX files and read both back as one batch
+    static Tensor readAll(int[] pixels) throws Exception{
+        File images = File.createTempFile("images", ".idx");
+        File labels = File.createTempFile("labels", ".idx");
+        images.deleteOnExit();
+        labels.deleteOnExit();
+        writeIdx(images, new int[]{2, 2, 2}, pixels);
+        writeIdx(labels, new int[]{2}, new int[]{0, 1});
+        IdxDataset data = new IdxDataset(images, labels);
+        Tensor x = new Tensor(2, 4);
+        data.readBatch(new int[]{0, 1}, 0, 2, x, new Tensor(2, 2));
+        return x;
+    }
+
+    static void writeIdx(File file, int[] dims, int[] values) throws IOException{
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))){
+            out.write(new byte[]{0, 0, 0x08, (byte) dims.length});
+            for (int i = 0; i < dims.length; i++){
+                out.writeInt(dims[i]);
+            }
+            for (int i = 0; i < values.length; i++){
+                out.writeByte(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.LossFunctions.CrossEntropy;
+import Sequential.Optimizers.Adam;
+import Sequential.Optimizers.MiniBatch;
+import Sequential.Optimizers.Optimizer;
+import Sequential.Optimizers.ParameterStore;
+import Sequential.Sequential;
+import Sequential.Util.Tensor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+// Tests of the optimizers across calls to fit
+public class OptimizerTest {
+    public static void main(String[] args){
+        Check.run("adamTrainsLayersAddedAfterFit", () -> trainsLayersAddedAfterFit(new Adam()));
+        Check.run("miniBatchTrainsLayersAddedAfterFit", () -> trainsLayersAddedAfterFit(new MiniBatch(0.05)));
+        Check.run("adamKeepsMomentsOfExistingLayers", OptimizerTest::adamKeepsMomentsOfExistingLayers);
+        Check.finish();
+    }
+
+    // Fit a network, add a layer to it, and fit it again. The added layer must be trained by the second fit
+    static void trainsLayersAddedAfterFit(Optimizer opt) throws Exception{
+        Sequential net = network(opt);
+        double[][][][] x = inputs();
+        double[][] y = labels();
+        net.fit(x, y, 4, 1);
+        net.addDense(4, null, "softmax");
+        Tensor added = lastLayerParams(net);
+        Tensor before = added.copy();
+        net.fit(x, y, 4, 1);
+        Check.isTrue(changed(before, added), "the added layer was not updated");
+    }
+
+    // Adding a layer must not reset the moments adam kept for the layers the network already had
+    static void adamKeepsMomentsOfExistingLayers() throws Exception{
+        Adam opt = new Adam();
+        Sequential net = network(opt);
+        net.fit(inputs(), labels(), 4, 1);
+        ParameterStore store = opt.getParameterStore();
+        int size = store.getParams(0).size();
+        Tensor first = store.getState(0).copy();
+        Tensor second = store.getState(1).copy();
+
+        net.addDense(4, null, "softmax");
+        opt.constructOptimizer(net);
+        ParameterStore rebuilt = opt.getParameterStore();
+        Check.isTrue(rebuilt.numBuffers() == 2, "the added layer was not registered");
+        for (int i = 0; i < size; i++){
+            Check.close(first.getFlat(i), rebuilt.getState(0).getFlat(i), 0, "first moment " + i);
+            Check.close(second.getFlat(i), rebuilt.getState(1).getFlat(i), 0, "second moment " + i);
+        }
+    }
+
+    // A single dense layer with a relu, so that a softmax layer can be added after it is compiled
+    static Sequential network(Optimizer opt) throws Exception{
+        Sequential net = new Sequential();
+        net.addDense(4, new int[]{1, 1, 6}, "relu");
+        net.compile(new CrossEntropy(), opt, new String[]{"accuracy"});
+        return net;
+    }
+
+    static double[][][][] inputs(){
+        Random rand = new Random(3);
+        double[][][][] x = new double[12][1][1][6];
+        for (int i = 0; i < x.length; i++){
+            for (int j = 0; j < 6; j++){
+                x[i][0][0][j] = rand.nextDouble();
+            }
+        }
+        return x;
+    }
+
+    static double[][] labels(){
+        double[][] y = new double[12][4];
+        for (int i = 0; i < y.length; i++){
+            y[i][i % 4] = 1;
+        }
+        return y;
+    }
+
+    // Return the parameters of the last trainable layer of the network
+    static Tensor lastLayerParams(Sequential net){
+        ArrayList<Layer> layers = net.getLayers();
+        for (int i = layers.size() - 1; i >= 0; i--){
+            if (layers.get(i) instanceof Trainable){
+                return ((Trainable) layers.get(i)).getParams();
+            }
+        }
+        throw new AssertionError("the network has no trainable layers");
+    }
+
+    static boolean changed(Tensor before, Tensor after){
+        for (int i = 0; i < before.size(); i++){
+            if (before.getFlat(i) != after.getFlat(i)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
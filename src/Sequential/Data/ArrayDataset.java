@@ -0,0 +1,52 @@
+package Sequential.Data;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
+
+/**
+ * Data set over inputs and expected outputs that are already in memory. The arrays are not copied.
+ */
+public class ArrayDataset implements Dataset {
+    private double[][][][] x;
+    private double[][] y;
+
+    /**
+     * Constructs a new ArrayDataset.
+     * @param x Array of 3D inputs.
+     * @param y Array of 1D expected outputs corresponding to the inputs.
+     * @throws InvalidDimensionException
+     */
+    public ArrayDataset(double[][][][] x, double[][] y) throws InvalidDimensionException{
+        if (x.length == 0 || x.length != y.length){
+            throw new InvalidDimensionException("ArrayDataset: Must have the same, nonzero, number of input examples as output examples");
+        }
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public int size(){
+        return x.length;
+    }
+
+    @Override
+    public int[] getInDim(){
+        return new int[]{x[0].length, x[0][0].length, x[0][0][0].length};
+    }
+
+    @Override
+    public int getOutSize(){
+        return y[0].length;
+    }
+
+    @Override
+    public void readBatch(int[] indices, int start, int end, Tensor xBatch, Tensor yBatch) throws InvalidDimensionException{
+        if (xBatch.getDim(0) < end - start || yBatch.getDim(0) < end - start){
+            throw new InvalidDimensionException("ArrayDataset: Batch tensors are too small for the requested examples");
+        }
+        for (int i = start; i < end; i++){
+            xBatch.setRow(i - start, x[indices[i]]);
+            yBatch.setRow(i - start, y[indices[i]]);
+        }
+    }
+}
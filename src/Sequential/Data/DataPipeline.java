@@ -0,0 +1,205 @@
+package Sequential.Data;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.BatchIterator;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Batch iterator that reads upcoming batches on background threads while the network trains on the
+ * current one. Batches are read into a fixed ring of reusable buffers, so at most numBuffers - 1 batches
+ * are prepared ahead of the batch in use. Examples are decoded, normalized, and flattened by the data
+ * set, and shuffled by the order they are read in.
+ */
+public class DataPipeline extends BatchIterator implements AutoCloseable {
+    private ExecutorService workers;
+    private Tensor[] xSlots;
+    private Tensor[] ySlots;
+    private Future<?>[] pending;
+    // Number of batches of this epoch that have been given out
+    private int nextBatch;
+
+    /**
+     * Constructs a new DataPipeline.
+     * @param data The examples to iterate over.
+     * @param batchSize Maximum number of examples in each batch.
+     * @param shuffle Whether the order of the examples should be shuffled at the start of every epoch.
+     * @param numBuffers Number of batch buffers in the ring, including the one in use by the network.
+     * @param numWorkers Number of threads reading batches.
+     * @throws InvalidDimensionException
+     */
+    public DataPipeline(Dataset data, int batchSize, boolean shuffle, int numBuffers, int numWorkers)
+            throws InvalidDimensionException{
+        super(data, batchSize, shuffle);
+        if (numBuffers < 2 || numWorkers < 1){
+            throw new InvalidDimensionException("DataPipeline: Must have at least two buffers and one worker");
+        }
+        xSlots = new Tensor[numBuffers];
+        ySlots = new Tensor[numBuffers];
+        pending = new Future<?>[numBuffers];
+        workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r){
+                // Don't keep the program alive if the pipeline is never closed
+                Thread t = new Thread(r, "DataPipeline");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Constructs a new DataPipeline with three buffers and one worker.
+     * @param data The examples to iterate over.
+     * @param batchSize Maximum number of examples in each batch.
+     * @param shuffle Whether the order of the examples should be shuffled at the start of every epoch.
+     * @throws InvalidDimensionException
+     */
+    public DataPipeline(Dataset data, int batchSize, boolean shuffle) throws InvalidDimensionException{
+        this(data, batchSize, shuffle, 3, 1);
+    }
+
+    // Start a new epoch and begin reading its first batches
+    @Override
+    public void reset(){
+        // Batches of the last epoch still being read depend on the order, so let them finish first
+        for (int i = 0; i < pending.length; i++){
+            awaitQuietly(pending[i]);
+            pending[i] = null;
+        }
+        super.reset();
+        nextBatch = 0;
+        for (int i = 0; i < xSlots.length && i < numBatches(); i++){
+            submit(i);
+        }
+    }
+
+    // Continue an epoch from a saved position and begin reading the batches after it
+    @Override
+    public void restore(int[] order, int cursor, byte[] shuffleState) throws InvalidDimensionException, IOException{
+        for (int i = 0; i < pending.length; i++){
+            awaitQuietly(pending[i]);
+            pending[i] = null;
+        }
+        super.restore(order, cursor, shuffleState);
+        nextBatch = (cursor + batchSize - 1) / batchSize;
+        submitAhead();
+    }
+
+    // Set the precision of the batches. Batches already being read in another precision are read again,
+    // so that training never converts them
+    @Override
+    public void setPrecision(Precision precision){
+        if (precision == this.precision){
+            return;
+        }
+        super.setPrecision(precision);
+        boolean reading = false;
+        for (int i = 0; i < pending.length; i++){
+            if (pending[i] != null){
+                awaitQuietly(pending[i]);
+                pending[i] = null;
+                reading = true;
+            }
+        }
+        if (reading){
+            submitAhead();
+        }
+    }
+
+    // Begin reading the batches after the position in the epoch
+    private void submitAhead(){
+        // The first call to next refills the slot of the batch before the cursor, so leave it free
+        int ahead = nextBatch == 0 ? xSlots.length : xSlots.length - 1;
+        for (int i = nextBatch; i < nextBatch + ahead && i < numBatches(); i++){
+            submit(i);
+        }
+    }
+
+    // Wait for the next batch of the epoch to be read. The batch is only valid until the next call
+    @Override
+    public void next() throws InvalidOperationException, InvalidDimensionException{
+        if (!hasNext()){
+            throw new InvalidOperationException("DataPipeline: No batches left in this epoch");
+        }
+        // The network is done with the last batch, so its buffer can hold a later one
+        if (nextBatch > 0 && nextBatch - 1 + xSlots.length < numBatches()){
+            submit(nextBatch - 1 + xSlots.length);
+        }
+        int slot = nextBatch % xSlots.length;
+        await(pending[slot]);
+        pending[slot] = null;
+        int end = Math.min(cursor + batchSize, order.length);
+        xBatch = xSlots[slot].slice(0, end - cursor);
+        yBatch = ySlots[slot].slice(0, end - cursor);
+        cursor = end;
+        nextBatch++;
+    }
+
+    // Stop the worker threads
+    @Override
+    public void close(){
+        workers.shutdownNow();
+    }
+
+    // Start reading the given batch of the epoch into its buffer, allocating the buffer in the precision of
+    // the batches when it is first filled or the precision has changed
+    private void submit(int batch){
+        final int slot = batch % xSlots.length;
+        final int start = batch * batchSize;
+        final int end = Math.min(start + batchSize, order.length);
+        if (xSlots[slot] == null || xSlots[slot].getPrecision() != precision){
+            xSlots[slot] = new Tensor(precision, batchSize, inSize);
+            ySlots[slot] = new Tensor(precision, batchSize, data.getOutSize());
+        }
+        final Tensor x = xSlots[slot];
+        final Tensor y = ySlots[slot];
+        pending[slot] = workers.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InvalidDimensionException{
+                data.readBatch(order, start, end, x, y);
+                return null;
+            }
+        });
+    }
+
+    // Wait for a batch to be read, rethrowing any failure
+    private static void await(Future<?> batch) throws InvalidDimensionException{
+        try {
+            batch.get();
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof InvalidDimensionException){
+                throw (InvalidDimensionException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("DataPipeline: Interrupted while waiting for a batch", e);
+        }
+    }
+
+    // Wait for a batch that is no longer needed, ignoring any failure
+    private static void awaitQuietly(Future<?> batch){
+        if (batch == null){
+            return;
+        }
+        try {
+            batch.get();
+        } catch (ExecutionException e){
+            // The batch is being discarded
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
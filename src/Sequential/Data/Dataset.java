@@ -0,0 +1,57 @@
+package Sequential.Data;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
+
+import java.util.Random;
+
+/**
+ * A set of examples, each a 3D input and a 1D expected output, that can be read into batches.
+ */
+public interface Dataset {
+    /**
+     * Return the number of examples in the data set.
+     * @return The number of examples.
+     */
+    int size();
+
+    /**
+     * Return the dimensions of each input.
+     * @return The depth, height, and width of each input.
+     */
+    int[] getInDim();
+
+    /**
+     * Return the length of each expected output.
+     * @return The number of values in each expected output.
+     */
+    int getOutSize();
+
+    /**
+     * Copy the inputs and expected outputs of the examples at indices[start] to indices[end - 1] into
+     * consecutive rows of the given tensors. Inputs are flattened in row major order. Batches may be
+     * read by several threads at once, each into its own tensors.
+     * @param indices The locations of examples in the data set.
+     * @param start The first location in indices to read (inclusive).
+     * @param end The last location in indices to read (exclusive).
+     * @param x Rank 2 tensor with at least end - start rows to copy the inputs into.
+     * @param y Rank 2 tensor with at least end - start rows to copy the expected outputs into.
+     * @throws InvalidDimensionException
+     */
+    void readBatch(int[] indices, int start, int end, Tensor x, Tensor y) throws InvalidDimensionException;
+
+    /**
+     * Rearrange the given permutation of the examples into the random order they should be read in for
+     * an epoch. Data sets stored on disk can keep examples that are stored together close in the order.
+     * @param order A permutation of the locations of every example in the data set.
+     * @param rand The generator to shuffle with.
+     */
+    default void shuffle(int[] order, Random rand){
+        for (int i = order.length - 1; i > 0; i--){
+            int j = rand.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package Sequential.Data;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Data set backed by a pair of memory mapped IDX files, such as the MNIST images and labels. Pixels stay
+ * in the files as unsigned bytes and are min max normalized as each batch is read. Labels are given to
+ * the network as one hot expected outputs.
+ */
+public class IdxDataset implements Dataset {
+    private IdxFile images;
+    private IdxFile labels;
+    private int[] inDim;
+    private int inSize;
+    private int numClasses;
+    // Normalized value of each possible pixel
+    private double[] pixelValues = new double[256];
+
+    /**
+     * Constructs a new IdxDataset with one class for each label value up to the largest label in the file.
+     * @param imageFile IDX file of images with dimensions (examples, height, width) or (examples, depth, height, width).
+     * @param labelFile IDX file of labels with dimensions (examples).
+     * @throws IOException
+     * @throws InvalidDimensionException
+     */
+    public IdxDataset(File imageFile, File labelFile) throws IOException, InvalidDimensionException{
+        this(imageFile, labelFile, -1);
+    }
+
+    /**
+     * Constructs a new IdxDataset.
+     * @param imageFile IDX file of images with dimensions (examples, height, width) or (examples, depth, height, width).
+     * @param labelFile IDX file of labels with dimensions (examples).
+     * @param numClasses Length of the one hot expected outputs.
+     * @throws IOException
+     * @throws InvalidDimensionException
+     */
+    public IdxDataset(File imageFile, File labelFile, int numClasses) throws IOException, InvalidDimensionException{
+        this(imageFile, labelFile, numClasses, -1, -1);
+    }
+
+    /**
+     * Constructs a new IdxDataset that normalizes pixels with the given range instead of the range of the
+     * pixels in the file. Shards of a larger data set should share a range so that they are normalized alike.
+     * @param imageFile IDX file of images with dimensions (examples, height, width) or (examples, depth, height, width).
+     * @param labelFile IDX file of labels with dimensions (examples).
+     * @param numClasses Length of the one hot expected outputs.
+     * @param minPixel The pixel value that is normalized to 0.
+     * @param maxPixel The pixel value that is normalized to 1.
+     * @throws IOException
+     * @throws InvalidDimensionException
+     */
+    public IdxDataset(File imageFile, File labelFile, int numClasses, int minPixel, int maxPixel)
+            throws IOException, InvalidDimensionException{
+        images = new IdxFile(imageFile);
+        labels = new IdxFile(labelFile);
+        int[] imageDims = images.getDims();
+        if (imageDims.length == 3){
+            inDim = new int[]{1, imageDims[1], imageDims[2]};
+        } else if (imageDims.length == 4){
+            inDim = new int[]{imageDims[1], imageDims[2], imageDims[3]};
+        } else {
+            throw new InvalidDimensionException("IdxDataset: Images must have 3 or 4 dimensions");
+        }
+        if (labels.getDims().length != 1 || labels.getDims()[0] != imageDims[0] || imageDims[0] == 0){
+            throw new InvalidDimensionException("IdxDataset: Must have the same, nonzero, number of images as labels");
+        }
+        inSize = images.entrySize();
+
+        int maxLabel = 0;
+        for (int i = 0; i < size(); i++){
+            maxLabel = Math.max(maxLabel, labels.get(i));
+        }
+        this.numClasses = numClasses < 0 ? maxLabel + 1 : numClasses;
+        if (maxLabel >= this.numClasses){
+            throw new InvalidDimensionException("IdxDataset: Label " + maxLabel + " is outside of the " + this.numClasses + " classes");
+        }
+        if (minPixel < 0){
+            setPixelValues();
+        } else {
+            setPixelValues(minPixel, maxPixel);
+        }
+    }
+
+    // Find the range of the pixels so that they can be min max normalized the same way as NetUtil.minMaxNormalize
+    private void setPixelValues(){
+        int min = 255;
+        int max = 0;
+        int numPixels = size() * inSize;
+        for (int i = 0; i < numPixels; i++){
+            int pixel = images.get(i);
+            min = Math.min(min, pixel);
+            max = Math.max(max, pixel);
+        }
+        setPixelValues(min, max);
+    }
+
+    // Normalize every pixel value with the given range. When every pixel has the same value, such as in a shard
+    // of blank images, there is no range to scale by, so every pixel is normalized to 0
+    private void setPixelValues(int min, int max){
+        for (int i = 0; i < pixelValues.length; i++){
+            pixelValues[i] = max == min ? 0 : (i - min) / (double) (max - min);
+        }
+    }
+
+    @Override
+    public int size(){
+        return labels.getDims()[0];
+    }
+
+    @Override
+    public int[] getInDim(){
+        return new int[]{inDim[0], inDim[1], inDim[2]};
+    }
+
+    @Override
+    public int getOutSize(){
+        return numClasses;
+    }
+
+    @Override
+    public void readBatch(int[] indices, int start, int end, Tensor x, Tensor y) throws InvalidDimensionException{
+        if (x.getDim(0) < end - start || y.getDim(0) < end - start || x.getDim(1) != inSize || y.getDim(1) != numClasses){
+            throw new InvalidDimensionException("IdxDataset: Batch tensors do not match the requested examples");
+        }
+        for (int i = start; i < end; i++){
+            int xOffset = x.rowOffset(i - start);
+            int yOffset = y.rowOffset(i - start);
+            int imageStart = indices[i] * inSize;
+            for (int j = 0; j < inSize; j++){
+                x.setFlat(xOffset + j, pixelValues[images.get(imageStart + j)]);
+            }
+            for (int j = 0; j < numClasses; j++){
+                y.setFlat(yOffset + j, 0);
+            }
+            y.setFlat(yOffset + labels.get(indices[i]), 1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Sequential.Data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read only, memory mapped view of a file in the IDX format used by MNIST. The file starts with two
+ * zero bytes, a byte giving the type of the values, a byte giving the number of dimensions, and a big
+ * endian int for the size of each dimension. The values follow in row major order. Only unsigned byte
+ * values are supported, and they are read straight from the mapping without being copied onto the heap.
+ */
+public class IdxFile {
+    private static final int UNSIGNED_BYTE = 0x08;
+    private MappedByteBuffer data;
+    private int headerSize;
+    private int[] dims;
+
+    /**
+     * Maps the given IDX file into memory.
+     * @param file The IDX file to read.
+     * @throws IOException If the file cannot be read or is not an unsigned byte IDX file.
+     */
+    public IdxFile(File file) throws IOException{
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE){
+                throw new IOException("IdxFile: " + file + " is too large to be mapped");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < 4 || data.get(0) != 0 || data.get(1) != 0){
+            throw new IOException("IdxFile: " + file + " is not an IDX file");
+        }
+        if (data.get(2) != UNSIGNED_BYTE){
+            throw new IOException("IdxFile: " + file + " must contain unsigned bytes");
+        }
+        dims = new int[data.get(3)];
+        headerSize = 4 + 4 * dims.length;
+        if (dims.length == 0 || data.limit() < headerSize){
+            throw new IOException("IdxFile: " + file + " has a malformed header");
+        }
+        long numValues = 1;
+        for (int i = 0; i < dims.length; i++){
+            // The buffer is big endian by default, as is the IDX format
+            dims[i] = data.getInt(4 + 4 * i);
+            numValues *= dims[i];
+        }
+        if (data.limit() - headerSize != numValues){
+            throw new IOException("IdxFile: Size of " + file + " does not match the dimensions in its header");
+        }
+    }
+
+    // Return the size of each dimension of the file
+    public int[] getDims(){
+        return Arrays.copyOf(dims, dims.length);
+    }
+
+    // Return the number of values in each entry along the first dimension
+    public int entrySize(){
+        int ret = 1;
+        for (int i = 1; i < dims.length; i++){
+            ret *= dims[i];
+        }
+        return ret;
+    }
+
+    // Return the value at the given location of the flattened values
+    public int get(int loc){
+        return data.get(headerSize + loc) & 0xFF;
+    }
+}
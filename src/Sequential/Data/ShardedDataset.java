@@ -0,0 +1,139 @@
+package Sequential.Data;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Data set made of shards that are each their own data set, such as a large corpus split into IDX files
+ * that are memory mapped. Nothing is loaded onto the heap, and when shuffled, the examples of each shard
+ * stay together in the order so that an epoch streams through the shards one at a time instead of reading
+ * the whole corpus at random.
+ */
+public class ShardedDataset implements Dataset {
+    private Dataset[] shards;
+    // Location of the first example of each shard, followed by the total number of examples
+    private int[] starts;
+
+    /**
+     * Constructs a new ShardedDataset.
+     * @param shards The shards of the data set. Each must have the same input and output dimensions.
+     * @throws InvalidDimensionException
+     */
+    public ShardedDataset(Dataset... shards) throws InvalidDimensionException{
+        if (shards.length == 0){
+            throw new InvalidDimensionException("ShardedDataset: Must have at least one shard");
+        }
+        this.shards = Arrays.copyOf(shards, shards.length);
+        starts = new int[shards.length + 1];
+        for (int i = 0; i < shards.length; i++){
+            if (!Arrays.equals(shards[i].getInDim(), shards[0].getInDim()) || shards[i].getOutSize() != shards[0].getOutSize()){
+                throw new InvalidDimensionException("ShardedDataset: Every shard must have the same dimensions");
+            }
+            starts[i + 1] = starts[i] + shards[i].size();
+        }
+    }
+
+    /**
+     * Opens pairs of IDX image and label files as the shards of a data set. Every shard is normalized with
+     * the given pixel range.
+     * @param imageFiles IDX image file of each shard.
+     * @param labelFiles IDX label file of each shard.
+     * @param numClasses Length of the one hot expected outputs.
+     * @param minPixel The pixel value that is normalized to 0.
+     * @param maxPixel The pixel value that is normalized to 1.
+     * @return The sharded data set.
+     * @throws IOException
+     * @throws InvalidDimensionException
+     */
+    public static ShardedDataset fromIdx(File[] imageFiles, File[] labelFiles, int numClasses, int minPixel, int maxPixel)
+            throws IOException, InvalidDimensionException{
+        if (imageFiles.length != labelFiles.length){
+            throw new InvalidDimensionException("ShardedDataset: Must have the same number of image files as label files");
+        }
+        Dataset[] shards = new Dataset[imageFiles.length];
+        for (int i = 0; i < shards.length; i++){
+            shards[i] = new IdxDataset(imageFiles[i], labelFiles[i], numClasses, minPixel, maxPixel);
+        }
+        return new ShardedDataset(shards);
+    }
+
+    @Override
+    public int size(){
+        return starts[shards.length];
+    }
+
+    @Override
+    public int[] getInDim(){
+        return shards[0].getInDim();
+    }
+
+    @Override
+    public int getOutSize(){
+        return shards[0].getOutSize();
+    }
+
+    // Read each run of examples that come from the same shard with one call to that shard
+    @Override
+    public void readBatch(int[] indices, int start, int end, Tensor x, Tensor y) throws InvalidDimensionException{
+        int[] local = new int[end - start];
+        int runStart = start;
+        while (runStart < end){
+            int shard = shardOf(indices[runStart]);
+            int runEnd = runStart;
+            while (runEnd < end && indices[runEnd] >= starts[shard] && indices[runEnd] < starts[shard + 1]){
+                local[runEnd - runStart] = indices[runEnd] - starts[shard];
+                runEnd++;
+            }
+            shards[shard].readBatch(local, 0, runEnd - runStart, x.slice(runStart - start, end - start),
+                    y.slice(runStart - start, end - start));
+            runStart = runEnd;
+        }
+    }
+
+    // Shuffle the order of the shards, then the order of the examples within each shard
+    @Override
+    public void shuffle(int[] order, Random rand){
+        int[] shardOrder = new int[shards.length];
+        for (int i = 0; i < shardOrder.length; i++){
+            shardOrder[i] = i;
+        }
+        for (int i = shardOrder.length - 1; i > 0; i--){
+            int j = rand.nextInt(i + 1);
+            int tmp = shardOrder[i];
+            shardOrder[i] = shardOrder[j];
+            shardOrder[j] = tmp;
+        }
+        int loc = 0;
+        for (int i = 0; i < shardOrder.length; i++){
+            int shard = shardOrder[i];
+            int shardStart = loc;
+            for (int j = starts[shard]; j < starts[shard + 1]; j++){
+                order[loc++] = j;
+            }
+            for (int j = loc - 1; j > shardStart; j--){
+                int k = shardStart + rand.nextInt(j - shardStart + 1);
+                int tmp = order[j];
+                order[j] = order[k];
+                order[k] = tmp;
+            }
+        }
+    }
+
+    // Return the shard that holds the example at the given location
+    private int shardOf(int index){
+        int loc = Arrays.binarySearch(starts, index);
+        // Empty shards share a start with the next shard, so move to the last shard starting at the index
+        if (loc >= 0){
+            while (loc + 1 < shards.length && starts[loc + 1] == index){
+                loc++;
+            }
+            return loc;
+        }
+        return -loc - 2;
+    }
+}
@@ -0,0 +1,156 @@
+package Sequential.Inference;
+
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * HTTP server on localhost that serves predictions from a network. Requests are handled concurrently and
+ * their inputs are gathered into batches by a MicroBatcher, so the network sees batched forward passes
+ * however the requests arrive.
+ * <p>
+ * Inputs are POSTed to /predict as plain text, one input per line with its values flattened in row major
+ * order and separated by commas or whitespace. The response has one line of comma separated outputs for
+ * each input, in the same order.
+ */
+public class InferenceServer implements AutoCloseable {
+    private HttpServer server;
+    private ExecutorService handlers;
+    private MicroBatcher batcher;
+
+    /**
+     * Constructs and starts a new InferenceServer.
+     * @param net The compiled network to predict with.
+     * @param port Port on localhost to listen on, or 0 for any free port.
+     * @param maxBatchSize Largest number of inputs passed through the network at once.
+     * @param maxWaitMillis Longest time an input waits for others to join its batch, in milliseconds.
+     * @throws IOException
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public InferenceServer(Sequential net, int port, int maxBatchSize, double maxWaitMillis)
+            throws IOException, InvalidOperationException, InvalidDimensionException{
+        batcher = new MicroBatcher(net, maxBatchSize, maxWaitMillis);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/predict", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException{
+                handlePredict(exchange);
+            }
+        });
+        handlers = newHandlerExecutor();
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    // Return the port the server is listening on
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting requests, then stop the batcher
+    @Override
+    public void close(){
+        server.stop(0);
+        handlers.shutdown();
+        batcher.close();
+    }
+
+    // Queue every input of the request, then respond with the outputs once their batches have been predicted
+    private void handlePredict(HttpExchange exchange) throws IOException{
+        try {
+            if (!exchange.getRequestMethod().equals("POST")){
+                respond(exchange, 405, "Predictions must be POSTed\n");
+                return;
+            }
+            ArrayList<CompletableFuture<double[]>> results = new ArrayList<CompletableFuture<double[]>>();
+            try {
+                String[] lines = readBody(exchange).split("\n");
+                for (int i = 0; i < lines.length; i++){
+                    if (lines[i].trim().length() > 0){
+                        results.add(batcher.submit(parseInput(lines[i])));
+                    }
+                }
+            } catch (NumberFormatException | InvalidDimensionException e){
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < results.size(); i++){
+                double[] out = results.get(i).get();
+                for (int j = 0; j < out.length; j++){
+                    sb.append(j == 0 ? "" : ",");
+                    sb.append(out[j]);
+                }
+                sb.append("\n");
+            }
+            respond(exchange, 200, sb.toString());
+        } catch (InvalidOperationException | ExecutionException e){
+            respond(exchange, 503, "Prediction failed: " + e.getMessage() + "\n");
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Prediction interrupted\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException{
+        try (InputStream in = exchange.getRequestBody()){
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Parse one line of comma or whitespace separated values
+    private static double[] parseInput(String line){
+        String[] tokens = line.trim().split("[,\\s]+");
+        double[] ret = new double[tokens.length];
+        for (int i = 0; i < tokens.length; i++){
+            ret[i] = Double.parseDouble(tokens[i]);
+        }
+        return ret;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+    // Handle each request on its own virtual thread when the runtime has them (Java 21 and later), otherwise
+    // on a pool of platform threads that grows with the number of requests waiting on their batches
+    private static ExecutorService newHandlerExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r){
+                    Thread t = new Thread(r, "InferenceServer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package Sequential.Inference;
+
+import Sequential.Monitoring.InferenceMonitor;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.Tensor;
+
+/**
+ * Runs predictions with a network without touching the network's own layer results. A session shares
+ * the weights of the network it was created from, and keeps its activations in scratch buffers of its
+ * own that are reused from one prediction to the next. A session is used by one thread at a time, but
+ * any number of sessions can predict with the same network at once, so one loaded model can serve every
+ * request thread by giving each its own session. The network must not be trained or recompiled while
+ * its sessions are predicting.
+ */
+public class InferenceSession {
+    private Sequential net;
+    private int[] inDim;
+    private int inSize;
+    // Flattened inputs, with room for the largest batch predicted so far
+    private Tensor inputs;
+    // The monitor of the network when the session was created, or null
+    private InferenceMonitor monitor;
+
+    /**
+     * Constructs a new InferenceSession.
+     * @param net The compiled network to predict with.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public InferenceSession(Sequential net) throws InvalidOperationException, InvalidDimensionException{
+        if (net.getLayers().isEmpty() || net.getInDim() == null){
+            throw new InvalidOperationException("InferenceSession: Network must have layers to predict with");
+        }
+        this.net = net.replicate();
+        monitor = net.getInferenceMonitor();
+        inDim = net.getInDim();
+        inSize = inDim[0] * inDim[1] * inDim[2];
+    }
+
+    /**
+     * Return the outputs of the network, such as class probabilities, for a batch of inputs.
+     * @param in Array of 3D inputs to the network.
+     * @return One row of outputs for each input.
+     * @throws InvalidDimensionException
+     */
+    public double[][] predict(double[][][][] in) throws InvalidDimensionException{
+        if (in.length == 0){
+            return new double[0][];
+        }
+        Tensor batch = reserve(in.length);
+        for (int i = 0; i < in.length; i++){
+            if (in[i].length != inDim[0] || in[i][0].length != inDim[1] || in[i][0][0].length != inDim[2]){
+                throw new InvalidDimensionException("InferenceSession: Input " + i + " does not match the input dimensions of the network");
+            }
+            batch.setRow(i, in[i]);
+        }
+        return forward(batch).toRows();
+    }
+
+    /**
+     * Return the outputs of the network for a single input.
+     * @param in 3D input to the network.
+     * @return The outputs of the network.
+     * @throws InvalidDimensionException
+     */
+    public double[] predict(double[][][] in) throws InvalidDimensionException{
+        return predict(new double[][][][]{in})[0];
+    }
+
+    // Return the outputs of the network for a batch of flattened inputs, one per row. The returned tensor
+    // belongs to the session and is only valid until its next prediction
+    public Tensor predict(Tensor in) throws InvalidDimensionException{
+        if (in.rank() != 2 || in.getDim(1) != inSize){
+            throw new InvalidDimensionException("InferenceSession: Inputs must be flattened into rows of " + inSize);
+        }
+        return forward(in.getPrecision() == net.getPrecision() ? in : in.toPrecision(net.getPrecision()));
+    }
+
+    // Return the monitor the session reports its predictions to, or null
+    public InferenceMonitor getMonitor(){
+        return monitor;
+    }
+
+    // Return the number of values in each flattened input
+    public int getInSize(){
+        return inSize;
+    }
+
+    // Pass a batch through the network, reporting it to the monitor if there is one
+    private Tensor forward(Tensor batch) throws InvalidDimensionException{
+        if (monitor == null){
+            return net.forwardBatchPass(batch);
+        }
+        long start = System.nanoTime();
+        Tensor out = net.forwardBatchPass(batch);
+        monitor.batchFinished(batch.getDim(0), System.nanoTime() - start);
+        return out;
+    }
+
+    // Return a tensor of the given number of flattened inputs, backed by the session's input buffer
+    public Tensor reserve(int numInputs) throws InvalidDimensionException{
+        if (inputs == null || inputs.getDim(0) < numInputs){
+            inputs = new Tensor(net.getPrecision(), numInputs, inSize);
+        }
+        return inputs.slice(0, numInputs);
+    }
+}
@@ -0,0 +1,165 @@
+package Sequential.Inference;
+
+import Sequential.Monitoring.InferenceMonitor;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.Tensor;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers predictions submitted from any number of threads into batches, so that concurrent requests
+ * share one batched forward pass instead of each making their own. A batch is passed through the network
+ * as soon as it holds the maximum number of inputs, or once its oldest input has waited the maximum wait
+ * time, which bounds the latency batching adds to any one prediction.
+ */
+public class MicroBatcher implements AutoCloseable {
+    private InferenceSession session;
+    private int maxBatchSize;
+    private long maxWaitNanos;
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+    private Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new MicroBatcher and starts its batching thread.
+     * @param net The compiled network to predict with.
+     * @param maxBatchSize Largest number of inputs passed through the network at once.
+     * @param maxWaitMillis Longest time an input waits for others to join its batch, in milliseconds.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public MicroBatcher(Sequential net, int maxBatchSize, double maxWaitMillis)
+            throws InvalidOperationException, InvalidDimensionException{
+        if (maxBatchSize < 1 || maxWaitMillis < 0){
+            throw new InvalidOperationException("MicroBatcher: Batch size must be at least 1 and wait time must not be negative");
+        }
+        this.session = net.newSession();
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = (long) (maxWaitMillis * 1e6);
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run(){
+                batchLoop();
+            }
+        }, "MicroBatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queue an input to be predicted with the next batch.
+     * @param in Input to the network, flattened in row major order.
+     * @return A future completed with the outputs of the network for the input.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public CompletableFuture<double[]> submit(double[] in) throws InvalidDimensionException, InvalidOperationException{
+        if (in.length != session.getInSize()){
+            throw new InvalidDimensionException("MicroBatcher: Inputs must have " + session.getInSize() + " values");
+        }
+        if (!running){
+            throw new InvalidOperationException("MicroBatcher: Batcher has been closed");
+        }
+        Request request = new Request(in);
+        queue.add(request);
+        // The batcher may have been closed after the check above, in which case nothing will take the input
+        if (!running && queue.remove(request)){
+            throw new InvalidOperationException("MicroBatcher: Batcher has been closed");
+        }
+        return request.result;
+    }
+
+    // Return the number of values in each flattened input
+    public int getInSize(){
+        return session.getInSize();
+    }
+
+    // Stop the batching thread, failing any predictions that are still queued
+    @Override
+    public void close(){
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null){
+            request.result.completeExceptionally(new InvalidOperationException("MicroBatcher: Batcher has been closed"));
+        }
+    }
+
+    // Wait for a first input, gather inputs until the batch is full or the first input's wait is over,
+    // then predict the batch
+    private void batchLoop(){
+        ArrayList<Request> batch = new ArrayList<Request>(maxBatchSize);
+        try {
+            while (running){
+                Request first = queue.take();
+                batch.add(first);
+                long deadline = first.arrival + maxWaitNanos;
+                while (batch.size() < maxBatchSize){
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null){
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e){
+            // Closed while waiting for inputs
+        }
+        for (int i = 0; i < batch.size(); i++){
+            batch.get(i).result.completeExceptionally(new InvalidOperationException("MicroBatcher: Batcher has been closed"));
+        }
+    }
+
+    // Pass a batch through the network and give each request its row of the outputs
+    private void flush(ArrayList<Request> batch){
+        try {
+            Tensor x = session.reserve(batch.size());
+            for (int i = 0; i < batch.size(); i++){
+                x.setRow(i, batch.get(i).input);
+            }
+            Tensor out = session.predict(x);
+            InferenceMonitor monitor = session.getMonitor();
+            for (int i = 0; i < batch.size(); i++){
+                double[] row = new double[out.getDim(1)];
+                for (int j = 0; j < row.length; j++){
+                    row[j] = out.get(i, j);
+                }
+                batch.get(i).result.complete(row);
+                if (monitor != null){
+                    monitor.requestFinished(System.nanoTime() - batch.get(i).arrival);
+                }
+            }
+        } catch (Exception e){
+            if (session.getMonitor() != null){
+                session.getMonitor().requestsFailed(batch.size());
+            }
+            for (int i = 0; i < batch.size(); i++){
+                batch.get(i).result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // An input waiting to be predicted
+    private static class Request {
+        final double[] input;
+        final long arrival = System.nanoTime();
+        final CompletableFuture<double[]> result = new CompletableFuture<double[]>();
+
+        Request(double[] input){
+            this.input = input;
+        }
+    }
+}
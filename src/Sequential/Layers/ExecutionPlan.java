@@ -0,0 +1,238 @@
+package Sequential.Layers;
+
+import Sequential.Layers.TrainableLayer.ConvLayer;
+import Sequential.Layers.TrainableLayer.DenseLayer;
+import Sequential.Monitoring.LayerEvent;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Profiler;
+import Sequential.Util.Profiler.Phase;
+import Sequential.Util.Tensor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// The layers of a compiled network resolved into a flat array of steps that batches are passed forward
+// and backward through. A dense or convolutional layer followed by a relu is one step that activates the
+// layer's output in place. A convolutional layer, relu, and max pool is one step in which the pool applies
+// the relu as it takes the max of each window, so the activation is never written out. The shapes
+// of every step are resolved once, so only the input to the plan is checked on each pass, and every
+// step reuses its buffers from one batch to the next as long as the batch size stays the same
+public class ExecutionPlan {
+    private Step[] steps;
+    private int inSize;
+    // Flattened output size of each step
+    private int[] outSizes;
+    // The input to each step during the last forward pass, which its backward pass needs
+    private Tensor[] stepInputs;
+    // Measures every layer of every pass, or null when the network is not being profiled
+    private Profiler profiler;
+
+    // Build the plan for the given layers, which take inputs of the given dimensions
+    public ExecutionPlan(ArrayList<Layer> layers, int[] inDim) throws InvalidDimensionException{
+        ArrayList<Step> planned = new ArrayList<Step>();
+        int i = 0;
+        while (i < layers.size()){
+            Layer cur = layers.get(i);
+            Layer next = i + 1 < layers.size() ? layers.get(i + 1) : null;
+            Layer after = i + 2 < layers.size() ? layers.get(i + 2) : null;
+            if ((cur instanceof DenseLayer || cur instanceof ConvLayer) && next instanceof ReluLayer){
+                if (cur instanceof ConvLayer && after instanceof MaxPool){
+                    planned.add(new PooledStep(cur, (MaxPool) after));
+                    i += 3;
+                } else {
+                    planned.add(new ActivatedStep(cur, (ReluLayer) next));
+                    i += 2;
+                }
+            } else {
+                planned.add(new LayerStep(cur));
+                i++;
+            }
+        }
+        steps = planned.toArray(new Step[0]);
+        stepInputs = new Tensor[steps.length];
+        inSize = inDim[0] * inDim[1] * inDim[2];
+        outSizes = new int[steps.length];
+        for (int j = 0; j < steps.length; j++){
+            int[] outDim = steps[j].getOutDim();
+            outSizes[j] = outDim[0] * outDim[1] * outDim[2];
+        }
+    }
+
+    // Return the number of steps in the plan
+    public int numSteps(){
+        return steps.length;
+    }
+
+    // Return the layers that make up the given step
+    public Layer[] getStepLayers(int step){
+        return Arrays.copyOf(steps[step].layers, steps[step].layers.length);
+    }
+
+    // Return the flattened output size of the given step
+    public int getStepOutSize(int step){
+        return outSizes[step];
+    }
+
+    // Profile every layer of the passes through the plan, or stop profiling if the profiler is null
+    public void setProfiler(Profiler profiler){
+        this.profiler = profiler;
+    }
+
+    // Pass a batch forward through every step. The returned tensor is reused by the next pass
+    public Tensor forward(Tensor in) throws InvalidDimensionException{
+        if (in.rank() != 2 || in.getDim(1) != inSize){
+            throw new InvalidDimensionException("Given input dimensions don't match the input dimensions of the network");
+        }
+        for (int i = 0; i < steps.length; i++){
+            stepInputs[i] = in;
+            in = steps[i].forward(in, profiler);
+        }
+        return in;
+    }
+
+    // Pass the gradients of the loss with respect to the output of the last forward pass backward through
+    // every step, leaving the gradients of every trainable layer in the layer. Return the gradients of the
+    // loss with respect to the input of the plan
+    public Tensor backward(Tensor jacob) throws InvalidDimensionException{
+        for (int i = steps.length - 1; i >= 0; i--){
+            jacob = steps[i].backward(jacob, stepInputs[i], profiler);
+        }
+        return jacob;
+    }
+
+    // One kernel of the plan, made of one or more layers. Each layer of the step is passed through on its
+    // own so that it can be measured by the profiler, when there is one, and recorded as a flight recorder
+    // event, when recording is on. Both cost nothing measurable while off
+    private static abstract class Step {
+        Layer[] layers;
+
+        Step(Layer... layers){
+            this.layers = layers;
+        }
+
+        int[] getOutDim(){
+            return layers[layers.length - 1].getOutDim();
+        }
+
+        Tensor forward(Tensor in, Profiler profiler) throws InvalidDimensionException{
+            int batchSize = in.getDim(0);
+            for (int j = 0; j < layers.length; j++){
+                LayerEvent event = new LayerEvent();
+                event.begin();
+                if (profiler != null){
+                    profiler.begin();
+                }
+                in = forwardLayer(j, in);
+                if (profiler != null){
+                    profiler.end(layers[j], Phase.FORWARD, batchSize);
+                }
+                event.end();
+                if (event.shouldCommit()){
+                    event.describe(layers[j], "forward", batchSize);
+                    event.commit();
+                }
+            }
+            return in;
+        }
+
+        Tensor backward(Tensor jacob, Tensor in, Profiler profiler) throws InvalidDimensionException{
+            int batchSize = in.getDim(0);
+            for (int j = layers.length - 1; j >= 0; j--){
+                LayerEvent event = new LayerEvent();
+                event.begin();
+                if (profiler != null){
+                    profiler.begin();
+                }
+                jacob = backwardLayer(j, jacob, in);
+                if (profiler != null){
+                    profiler.end(layers[j], Phase.BACKWARD, batchSize);
+                }
+                event.end();
+                if (event.shouldCommit()){
+                    event.describe(layers[j], "backward", batchSize);
+                    event.commit();
+                }
+            }
+            return jacob;
+        }
+
+        // Pass a batch forward through the j-th layer of the step, given its input
+        abstract Tensor forwardLayer(int j, Tensor in) throws InvalidDimensionException;
+        // Pass gradients backward through the j-th layer of the step, given the input to the step
+        abstract Tensor backwardLayer(int j, Tensor jacob, Tensor in) throws InvalidDimensionException;
+    }
+
+    // A single layer
+    private static class LayerStep extends Step {
+        LayerStep(Layer layer){
+            super(layer);
+        }
+
+        @Override
+        Tensor forwardLayer(int j, Tensor in) throws InvalidDimensionException{
+            return layers[0].forwardBatchPass(in);
+        }
+
+        @Override
+        Tensor backwardLayer(int j, Tensor jacob, Tensor in) throws InvalidDimensionException{
+            return layers[0].computeGradients(jacob, in);
+        }
+    }
+
+    // A dense or convolutional layer whose output is activated by a relu in place
+    private static class ActivatedStep extends Step {
+        private Layer linear;
+        private ReluLayer relu;
+
+        ActivatedStep(Layer linear, ReluLayer relu){
+            super(linear, relu);
+            this.linear = linear;
+            this.relu = relu;
+        }
+
+        @Override
+        Tensor forwardLayer(int j, Tensor in) throws InvalidDimensionException{
+            if (j == 0){
+                return linear.forwardBatchPass(in);
+            }
+            return relu.forwardInPlace(in);
+        }
+
+        @Override
+        Tensor backwardLayer(int j, Tensor jacob, Tensor in) throws InvalidDimensionException{
+            if (j == 1){
+                return relu.computeGradientsFromOutput(jacob, relu.getLayerResult());
+            }
+            return linear.computeGradients(jacob, in);
+        }
+    }
+
+    // A convolutional layer whose output is pooled by a max pool that applies the relu between them. The
+    // relu has no pass of its own, so its time is measured as part of the pool
+    private static class PooledStep extends Step {
+        private Layer linear;
+        private MaxPool pool;
+
+        PooledStep(Layer linear, MaxPool pool){
+            super(linear, pool);
+            this.linear = linear;
+            this.pool = pool;
+        }
+
+        @Override
+        Tensor forwardLayer(int j, Tensor in) throws InvalidDimensionException{
+            if (j == 0){
+                return linear.forwardBatchPass(in);
+            }
+            return pool.forwardRectified(in);
+        }
+
+        @Override
+        Tensor backwardLayer(int j, Tensor jacob, Tensor in) throws InvalidDimensionException{
+            if (j == 1){
+                return pool.computeRectifiedGradients(jacob);
+            }
+            return linear.computeGradients(jacob, in);
+        }
+    }
+}
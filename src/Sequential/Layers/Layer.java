@@ -3,15 +3,20 @@
 
 package Sequential.Layers;
 
+import Sequential.MatMulBackends.EjmlBackend;
+import Sequential.MatMulBackends.MatMulBackend;
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Arrays;
 
 public abstract class Layer {
     protected int[] inDim;
-    protected double[][] layerResult;
+    protected Tensor layerResult;
+    protected MatMulBackend backend = new EjmlBackend();
 
     public Layer(int[] inDim) throws InvalidDimensionException{
         if (inDim.length != 3){
@@ -21,19 +26,43 @@ public abstract class Layer {
     }
 
     // Return the result of passing a batch of data through the layer
-    public  double[][] getLayerResult(){
+    public Tensor getLayerResult(){
         return layerResult;
     }
+    // Return the incoming dimensions of the layer
+    public int[] getInDim(){
+        return inDim;
+    }
+
     // Return the outgoing dimensions of the layer. For activation layers this is trivial
     // this will be overridden in the transformation layer extending classes
     public int[] getOutDim(){
         return inDim;
     };
 
+    // Set the kernel this layer uses to multiply matrices
+    public void setBackend(MatMulBackend backend){
+        this.backend = backend;
+    }
+
+    // Return the given buffer if it has the given precision and shape so it can be written over,
+    // otherwise return a new tensor of zeros with the given precision and shape
+    protected static Tensor reuseBuffer(Tensor buffer, Precision precision, int rows, int cols){
+        if (buffer != null && buffer.getPrecision() == precision && buffer.rank() == 2 &&
+                buffer.getDim(0) == rows && buffer.getDim(1) == cols){
+            return buffer;
+        }
+        return new Tensor(precision, rows, cols);
+    }
+
     public abstract void printInfo();
     public abstract double[] forwardPass(double[] in) throws InvalidDimensionException;
-    public abstract double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException;
-    public abstract double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException;
-    public abstract void writeLayer(FileWriter fWrite) throws IOException;
+    public abstract Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException;
+    public abstract Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException;
+    public abstract void writeLayer(Writer fWrite) throws IOException;
+    // Return the line describing this layer in the serialization format, without its parameters
+    public abstract String getMetaLine();
+    // Return a copy of this layer that shares its parameters but keeps its own results and gradients
+    public abstract Layer replicate() throws InvalidDimensionException;
 
 }
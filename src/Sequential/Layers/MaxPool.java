@@ -4,7 +4,7 @@ import Sequential.Layers.Layer;
 import Sequential.Util.*;
 import Sequential.SequentialExceptions.*;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
@@ -12,12 +12,22 @@ import java.util.Scanner;
 import static java.lang.String.format;
 
 public class MaxPool extends Layer {
+    // Largest number of values in a pooling window, so that the location of a window's max fits in a byte
+    private static final int MAX_WINDOW_SIZE = 256;
+
     private int vertStride;
     private int horStride;
     private int[] outDim;
     private int[] poolDim;
-    private int[][] preservedIn;
-    private int[][][] inMap;
+    // Location within its window of the max of every output of the last batch, stored row major in
+    // the window. Kept as unsigned bytes, one per output
+    private byte[] argMax;
+    // Running max and its location for each output of the row of windows being pooled
+    private double[] rowMax;
+    private int[] rowArgMax;
+    // Gradients of one example's input, summed in double precision when windows overlap
+    private double[] exampleGradients;
+    private Tensor inGradients;
 
     // Initialize the size of the maxpool
     public MaxPool(int[] poolDim, int[] inDim, int[] strideLength) throws InvalidDimensionException{
@@ -31,72 +41,30 @@ public class MaxPool extends Layer {
         if (poolDim[0] > inDim[1] || poolDim[1] > inDim[2]){
             throw new InvalidDimensionException("Pool dimensions cannot be greater than layer input dimensions");
         }
+        if (poolDim[0] * poolDim[1] > MAX_WINDOW_SIZE){
+            throw new InvalidDimensionException("Pool windows cannot hold more than " + MAX_WINDOW_SIZE + " values");
+        }
 
         this.poolDim = Arrays.copyOf(poolDim, poolDim.length);
         vertStride = strideLength[0];
         horStride = strideLength[1];
         outDim = new int[3];
         setOutDim();
-        inMap = new int[inDim[0] * inDim[1] * inDim[2]][(poolDim[0] / vertStride + 1) * (poolDim[1] / horStride + 1)][2];
-        fillInMap();
-    }
-
-    // For each index in the flattened 3D input, store in columns the indexes that index is mapped to
-    // if the index is mapped to less other indecies than the number of columns, the row will be padded
-    // with -1
-    private void fillInMap(){
-        // provide storage for each row of the inMap to indicate where to add the next location
-        int[] curIndex = new int[inMap.length];
-        int flatIndex;
-        // fill matrix with -1, and the curIndex of each row with 0
-        for (int i = 0; i < inMap.length; i++) {
-            curIndex[i] = 0;
-            for (int j = 0; j < inMap[0].length; j++) {
-                for (int k = 0; k < inMap[0][0].length; k++){
-                    inMap[i][j][k] = -1;
-                }
-            }
-        }
-        // Iterate through the layers of the input
-        for (int layer = 0; layer < inDim[0]; layer++) {
-            // Iterate vertically (moving the filter)
-            for (int i = 0; i + poolDim[0] <= inDim[1]; i += vertStride) {
-                // Iterate horizontally (moving the filter)
-                for (int j = 0; j + poolDim[1] <= inDim[2]; j += horStride) {
-                    // Iterate through rows of the filter
-                    for (int r = 0; r < poolDim[0]; r++) {
-                        // Iterate through columns of the filter
-                        for (int c = 0; c < poolDim[1]; c++) {
-                            // location of cur val in the input
-                            flatIndex = (layer * (inDim[1] * inDim[2]) + (r + i) * inDim[2] + (c + j));
-                            inMap[flatIndex][curIndex[flatIndex]][0] = (layer * outDim[1] * outDim[2] + (i / vertStride)
-                                    * outDim[2] + (j / horStride));
-                            inMap[flatIndex][curIndex[flatIndex]][1] = r * poolDim[1] + c;
-                            curIndex[flatIndex]++;
-                        }
-                    }
-                }
-            }
-        }
     }
 
-    // Map the values of the input to the appropriate location in the layer's transformed input matrix
-    private double[][] formedIn(double[] in) throws InvalidDimensionException{
-        if (in.length != inDim[0] * inDim[1] * inDim[2]){
-            throw new InvalidDimensionException("MaxPool Layer: fowardPass: Input size doesn't match layer input dim");
-        }
-        double[][] ret = new double[outDim[0] * outDim[1] * outDim[2]][poolDim[0] * poolDim[1]];
-        int j;
-
-        // Assign each input value to its proper location in the formed input
-        for (int i = 0; i < in.length; i++){
-            j = 0;
-            while (inMap[i][j][0] != -1){
-                ret[inMap[i][j][0]][inMap[i][j][1]] = in[i];
-                j++;
-            }
-        }
-        return ret;
+    // Construct a maxpool layer with the same dimensions as the given layer
+    private MaxPool(MaxPool source) throws InvalidDimensionException{
+        super(source.inDim);
+        this.poolDim = source.poolDim;
+        this.vertStride = source.vertStride;
+        this.horStride = source.horStride;
+        this.outDim = source.outDim;
+    }
+
+    // Return true if the windows tile the input without overlapping, such as when the stride is the
+    // size of the pool
+    private boolean isNonOverlapping(){
+        return vertStride >= poolDim[0] && horStride >= poolDim[1];
     }
 
      // Perform max pooling operations on a foward pass
@@ -105,70 +73,177 @@ public class MaxPool extends Layer {
         if (in.length != inDim[0] * inDim[1] * inDim[2]){
             throw new InvalidDimensionException("Given input dimensions don't match expected input dimensions");
         }
-        double[][] formedIn = formedIn(in);
         double[] ret = new double[outDim[0] * outDim[1] * outDim[2]];
-        int[] maxes = NetUtil.argMaxByRow(formedIn);
-        for (int i = 0; i < ret.length; i++){
-            ret[i] = formedIn[i][maxes[i]];
-        }
+        pool(new Tensor(in, 1, in.length), 0, new Tensor(ret, 1, ret.length), 0, null, 0, false);
         return ret;
     }
 
     // Perform max pooling operations on a foward pass
     @Override
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException{
-        if (in[0].length != inDim[0] * inDim[1] * inDim[2]){
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException{
+        return forwardBatchPass(in, false);
+    }
+
+    // Pool the relu of a batch without activating the batch first. The relu of the max of a window is the max
+    // of the relu of the window, so the max is found over the input and then set to 0 if it is not positive.
+    // Windows with a positive max have it in the same location either way
+    Tensor forwardRectified(Tensor in) throws InvalidDimensionException{
+        return forwardBatchPass(in, true);
+    }
+
+    // Pool a batch, setting every output that is not positive to 0 when rectifying
+    private Tensor forwardBatchPass(Tensor in, boolean rectify) throws InvalidDimensionException{
+        if (in.getDim(1) != inDim[0] * inDim[1] * inDim[2]){
             throw new InvalidDimensionException("Given input dimensions don't match expected input dimensions");
         }
-        preservedIn = new int[in.length][outDim[0] * outDim[1] * outDim[2]];
-        layerResult = new double[in.length][outDim[0] * outDim[1] * outDim[2]];
-        double[][] formedIn;
-        int[] maxes;
-        // for each batch
-        for (int i = 0; i < in.length; i++){
-            formedIn = formedIn(in[i]);
-            maxes = NetUtil.argMaxByRow(formedIn);
-            preservedIn[i] = maxes;
-            // send maxes away
-            for (int j = 0; j < layerResult[0].length; j++){
-                layerResult[i][j] = formedIn[j][maxes[j]];
-            }
+        in = in.contiguous();
+        int outSize = outDim[0] * outDim[1] * outDim[2];
+        int batchSize = in.getDim(0);
+        layerResult = reuseBuffer(layerResult, in.getPrecision(), batchSize, outSize);
+        if (argMax == null || argMax.length < batchSize * outSize){
+            argMax = new byte[batchSize * outSize];
+        }
+        for (int i = 0; i < batchSize; i++){
+            pool(in, in.rowOffset(i), layerResult, layerResult.rowOffset(i), argMax, i * outSize, rectify);
         }
         return layerResult;
     }
 
+    // Pool one example whose input starts at the given offset, writing the max of every window to the output
+    // and its location in the window to argMax, unless it is null. Windows are scanned a row of the input at a time, so the
+    // input is read in the order it is laid out in, and each window's values are compared in row major order
+    private void pool(Tensor in, int inOffset, Tensor out, int outOffset, byte[] argMax, int argOffset,
+                      boolean rectify){
+        int inHeight = inDim[1];
+        int inWidth = inDim[2];
+        int outHeight = outDim[1];
+        int outWidth = outDim[2];
+        if (rowMax == null || rowMax.length != outWidth){
+            rowMax = new double[outWidth];
+            rowArgMax = new int[outWidth];
+        }
+        for (int d = 0; d < outDim[0]; d++){
+            int channel = inOffset + d * inHeight * inWidth;
+            for (int oy = 0; oy < outHeight; oy++){
+                for (int ox = 0; ox < outWidth; ox++){
+                    rowMax[ox] = Integer.MIN_VALUE;
+                    rowArgMax[ox] = -1;
+                }
+                for (int r = 0; r < poolDim[0]; r++){
+                    int inRow = channel + (oy * vertStride + r) * inWidth;
+                    for (int ox = 0; ox < outWidth; ox++){
+                        int window = inRow + ox * horStride;
+                        for (int c = 0; c < poolDim[1]; c++){
+                            double val = in.getFlat(window + c);
+                            if (val > rowMax[ox]){
+                                rowMax[ox] = val;
+                                rowArgMax[ox] = r * poolDim[1] + c;
+                            }
+                        }
+                    }
+                }
+                int outRow = (d * outHeight + oy) * outWidth;
+                for (int ox = 0; ox < outWidth; ox++){
+                    // A window with no value above the starting max keeps its first value
+                    if (rowArgMax[ox] < 0){
+                        rowArgMax[ox] = 0;
+                        rowMax[ox] = in.getFlat(channel + oy * vertStride * inWidth + ox * horStride);
+                    }
+                    if (rectify && !(rowMax[ox] > 0)){
+                        rowMax[ox] = 0;
+                    }
+                    out.setFlat(outOffset + outRow + ox, rowMax[ox]);
+                    if (argMax != null){
+                        argMax[argOffset + outRow + ox] = (byte) rowArgMax[ox];
+                    }
+                }
+            }
+        }
+    }
+
     // Given the gradients of the loss with respect to this layer's output, compute and return the gradient of the
-    // loss with respect to this layers input for all batches
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException{
-        double[][] ret = new double[jacob.length][inDim[0] * inDim[1] * inDim[2]];
-        double sum;
-        int k;
+    // loss with respect to this layers input for all batches. The gradient of each output is passed to the
+    // max of its window, which is found from the locations kept by the last forward pass
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException{
+        return computeGradients(jacob, false);
+    }
+
+    // Compute the gradients of the loss with respect to the input of the relu pooled by the last forward pass.
+    // Outputs that were set to 0 by the relu pass no gradient back
+    Tensor computeRectifiedGradients(Tensor jacob) throws InvalidDimensionException{
+        return computeGradients(jacob, true);
+    }
+
+    // Pass the gradient of each output to the max of its window, skipping outputs that are not positive when
+    // the last forward pass was rectified
+    private Tensor computeGradients(Tensor jacob, boolean rectified) throws InvalidDimensionException{
+        int inSize = inDim[0] * inDim[1] * inDim[2];
+        int outSize = outDim[0] * outDim[1] * outDim[2];
+        if (jacob.getDim(1) != outSize || argMax == null || argMax.length < jacob.getDim(0) * outSize){
+            throw new InvalidDimensionException("MaxPool: Gradients don't match the output of the last forward pass");
+        }
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), jacob.getDim(0), inSize);
+        Tensor ret = inGradients;
+        boolean nonOverlapping = isNonOverlapping();
+        if (nonOverlapping){
+            // Only the max of each window is written, so the gradients of the last batch are cleared first
+            ret.fill(0);
+        } else if (exampleGradients == null || exampleGradients.length != inSize){
+            exampleGradients = new double[inSize];
+        }
+        int inWidth = inDim[2];
+        int outHeight = outDim[1];
+        int outWidth = outDim[2];
         // For each batch
-        for (int i = 0; i < jacob.length; i++){
-            // For each input
-            for (int j = 0; j < ret[0].length; j++){
-                sum = 0;
-                k = 0;
-                while (inMap[j][k][0] != -1){
-                    if (preservedIn[i][inMap[j][k][0]] == inMap[j][k][1]){
-                        sum += jacob[i][inMap[j][k][0]];
+        for (int i = 0; i < jacob.getDim(0); i++){
+            int retOffset = ret.rowOffset(i);
+            if (!nonOverlapping){
+                Arrays.fill(exampleGradients, 0);
+            }
+            for (int d = 0; d < outDim[0]; d++){
+                int channel = d * inDim[1] * inWidth;
+                for (int oy = 0; oy < outHeight; oy++){
+                    for (int ox = 0; ox < outWidth; ox++){
+                        int out = (d * outHeight + oy) * outWidth + ox;
+                        if (rectified && !(layerResult.get(i, out) > 0)){
+                            continue;
+                        }
+                        int loc = argMax[i * outSize + out] & 0xFF;
+                        int in = channel + (oy * vertStride + loc / poolDim[1]) * inWidth + ox * horStride + loc % poolDim[1];
+                        if (nonOverlapping){
+                            // Every input is in at most one window, so its gradient is written once
+                            ret.setFlat(retOffset + in, jacob.get(i, out));
+                        } else {
+                            exampleGradients[in] += jacob.get(i, out);
+                        }
                     }
-                    k++;
                 }
-                ret[i][j] = sum;
+            }
+            if (!nonOverlapping){
+                for (int j = 0; j < inSize; j++){
+                    ret.setFlat(retOffset + j, exampleGradients[j]);
+                }
             }
         }
-        // TODO - SEE IF THIS ACTUALLY HELPS
-        // preservedIn = null;
         return ret;
     }
 
+    @Override
+    public Layer replicate() throws InvalidDimensionException{
+        return new MaxPool(this);
+    }
+
     // Return the output dimensions of this layer
     @Override
     public int[] getOutDim(){
         return outDim;
     }
 
+    // Return the height and width of the pooling window
+    public int[] getPoolDim(){
+        return poolDim;
+    }
+
     // Print the info for this layer
     @Override
     public void printInfo(){
@@ -192,8 +267,12 @@ public class MaxPool extends Layer {
     // -d for pool dimensions, and -s for stride length. Precede these
     // options by writing a m for maxpool layer
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
-        String outString = "maxpool -d " + poolDim[0] + " " + poolDim[1] + " -s " + vertStride + " " + horStride + "\n";
-        fWrite.write(outString);
+    public void writeLayer(Writer fWrite) throws IOException {
+        fWrite.write(getMetaLine() + "\n");
+    }
+
+    @Override
+    public String getMetaLine(){
+        return "maxpool -d " + poolDim[0] + " " + poolDim[1] + " -s " + vertStride + " " + horStride;
     }
 }
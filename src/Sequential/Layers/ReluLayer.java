@@ -4,15 +4,16 @@
 package Sequential.Layers;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
-import org.omg.CORBA.DynAnyPackage.Invalid;
+import Sequential.Util.Tensor;
 
 import static java.lang.String.format;
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
 
 public class ReluLayer extends Layer{
+    private Tensor inGradients;
 
     public ReluLayer (int[] inDim) throws InvalidDimensionException{
         super(inDim);
@@ -32,37 +33,96 @@ public class ReluLayer extends Layer{
     }
 
     @Override
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException {
-        layerResult = new double[in.length][in[0].length];
-        for (int i = 0; i < in.length; i++){
-            layerResult[i] = forwardPass(in[i]);
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException {
+        in = in.contiguous();
+        // The result is not written over when it is the input, as it is after activating in place
+        layerResult = reuseBuffer(layerResult == in ? null : layerResult, in.getPrecision(), in.getDim(0), in.getDim(1));
+        int inOffset = in.getOffset();
+        double curIn;
+        for (int i = 0; i < layerResult.size(); i++){
+            curIn = in.getFlat(inOffset + i);
+            if (curIn > 0){
+                layerResult.setFlat(i, curIn);
+            }
+            else{
+                layerResult.setFlat(i, 0);
+            }
         }
         return layerResult;
     }
 
     @Override
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException {
-        if (prevInput.length != jacob.length || prevInput[0].length != jacob[0].length){
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException {
+        if (!prevInput.sameShape(jacob)){
             throw new InvalidDimensionException("In an activation layer, size of jacobian must equal size of previous input");
         }
-        double[][] ret = new double[jacob.length][jacob[0].length];
-        for (int i = 0; i < ret.length; i++){
-            for (int j = 0; j < ret[0].length; j++){
-                if (prevInput[i][j] > 0){
-                    ret[i][j] = jacob[i][j];
-                }
-                else{
-                    ret[i][j] = 0;
-                }
+        jacob = jacob.contiguous();
+        prevInput = prevInput.contiguous();
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), jacob.getDim(0), jacob.getDim(1));
+        int jacobOffset = jacob.getOffset();
+        int inOffset = prevInput.getOffset();
+        for (int i = 0; i < inGradients.size(); i++){
+            if (prevInput.getFlat(inOffset + i) > 0){
+                inGradients.setFlat(i, jacob.getFlat(jacobOffset + i));
+            }
+            else{
+                inGradients.setFlat(i, 0);
             }
         }
-        return ret;
+        return inGradients;
+    }
+
+    // Apply the activation in place to the output of the layer before this one and keep it as this
+    // layer's result, so that the two layers share one buffer
+    Tensor forwardInPlace(Tensor in) throws InvalidDimensionException {
+        if (!in.isContiguous()){
+            throw new InvalidDimensionException("Relu: In place activation requires a contiguous input");
+        }
+        int inOffset = in.getOffset();
+        for (int i = 0; i < in.size(); i++){
+            if (!(in.getFlat(inOffset + i) > 0)){
+                in.setFlat(inOffset + i, 0);
+            }
+        }
+        layerResult = in;
+        return in;
+    }
+
+    // Compute the gradients of the loss with respect to this layer's input from its output instead of
+    // its input, which is possible because the output is positive exactly where the input is
+    Tensor computeGradientsFromOutput(Tensor jacob, Tensor out) throws InvalidDimensionException {
+        if (!out.sameShape(jacob)){
+            throw new InvalidDimensionException("In an activation layer, size of jacobian must equal size of its output");
+        }
+        jacob = jacob.contiguous();
+        out = out.contiguous();
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), jacob.getDim(0), jacob.getDim(1));
+        int jacobOffset = jacob.getOffset();
+        int outOffset = out.getOffset();
+        for (int i = 0; i < inGradients.size(); i++){
+            if (out.getFlat(outOffset + i) > 0){
+                inGradients.setFlat(i, jacob.getFlat(jacobOffset + i));
+            }
+            else{
+                inGradients.setFlat(i, 0);
+            }
+        }
+        return inGradients;
+    }
+
+    @Override
+    public Layer replicate() throws InvalidDimensionException {
+        return new ReluLayer(inDim);
+    }
+
+    @Override
+    public void writeLayer(Writer fWrite) throws IOException {
+        fWrite.write(getMetaLine() + "\n");
     }
 
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
-        String outString = "relu\n";
-        fWrite.write(outString);
+    public String getMetaLine(){
+        return "relu";
     }
 
     @Override
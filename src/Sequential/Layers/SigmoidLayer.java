@@ -4,13 +4,16 @@
 package Sequential.Layers;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Scanner;
 
 public class SigmoidLayer extends Layer{
 
+    private Tensor inGradients;
+
     public SigmoidLayer(int[] inDim) throws InvalidDimensionException{
         super(inDim);
     }
@@ -25,32 +28,48 @@ public class SigmoidLayer extends Layer{
     }
 
     @Override
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException {
-        layerResult = new double[in.length][in[0].length];
-        for (int i = 0; i < in.length; i++){
-            layerResult[i] = forwardPass(in[i]);
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException {
+        in = in.contiguous();
+        layerResult = reuseBuffer(layerResult, in.getPrecision(), in.getDim(0), in.getDim(1));
+        int inOffset = in.getOffset();
+        for (int i = 0; i < layerResult.size(); i++){
+            layerResult.setFlat(i, (1 / (1 + Math.pow(Math.E, -1 * in.getFlat(inOffset + i)))));
         }
         return layerResult;
     }
 
     @Override
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException {
-        if (prevInput.length != jacob.length || prevInput[0].length != jacob[0].length){
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException {
+        if (!prevInput.sameShape(jacob)){
             throw new InvalidDimensionException("In an activation layer, size of jacobian must equal size of previous input");
         }
-        double[][] ret = new double[prevInput.length][prevInput[0].length];
-        for (int i = 0; i < ret.length; i++){
-            for (int j = 0; j < ret[0].length; j++){
-                ret[i][j] = jacob[i][j] * Math.pow(Math.E, -1 * prevInput[i][j]) / (Math.pow(1 + Math.pow(Math.E, -1 * prevInput[i][j]), 2));
-            }
+        jacob = jacob.contiguous();
+        prevInput = prevInput.contiguous();
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), prevInput.getDim(0), prevInput.getDim(1));
+        Tensor ret = inGradients;
+        int jacobOffset = jacob.getOffset();
+        int inOffset = prevInput.getOffset();
+        double curIn;
+        for (int i = 0; i < ret.size(); i++){
+            curIn = prevInput.getFlat(inOffset + i);
+            ret.setFlat(i, jacob.getFlat(jacobOffset + i) * Math.pow(Math.E, -1 * curIn) / (Math.pow(1 + Math.pow(Math.E, -1 * curIn), 2)));
         }
         return ret;
     }
 
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
-        String outString = "sigmoid\n";
-        fWrite.write(outString);
+    public Layer replicate() throws InvalidDimensionException {
+        return new SigmoidLayer(inDim);
+    }
+
+    @Override
+    public void writeLayer(Writer fWrite) throws IOException {
+        fWrite.write(getMetaLine() + "\n");
+    }
+
+    @Override
+    public String getMetaLine(){
+        return "sigmoid";
     }
 
     @Override
@@ -4,13 +4,16 @@
 package Sequential.Layers;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
-import Sequential.Util.NetUtil;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Scanner;
 
 public class SoftMaxLayer extends Layer{
+    // When set, the loss jacobian is already taken with respect to the inputs of this layer
+    private boolean fusedWithLoss = false;
+    private Tensor inGradients;
 
     public SoftMaxLayer(int[] inDim) throws InvalidDimensionException {
         super(inDim);
@@ -37,53 +40,84 @@ public class SoftMaxLayer extends Layer{
     }
 
     @Override
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException {
-        layerResult = new double[in.length][in[0].length];
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException {
+        in = in.contiguous();
+        layerResult = reuseBuffer(layerResult, in.getPrecision(), in.getDim(0), in.getDim(1));
+        int rowLen = in.getDim(1);
+        double sum;
+        double curResult;
 
-        for (int i = 0; i < in.length; i++){
-            layerResult[i] = forwardPass(in[i]);
+        for (int i = 0; i < in.getDim(0); i++){
+            int inOffset = in.rowOffset(i);
+            int outOffset = layerResult.rowOffset(i);
+            sum = 0;
+            // Compute exponents for each of the input scalars
+            for (int j = 0; j < rowLen; j++){
+                curResult = Math.pow(Math.E, in.getFlat(inOffset + j));
+                sum += curResult;
+                layerResult.setFlat(outOffset + j, curResult);
+            }
+            // Divide each value by the sum of the values
+            for (int j = 0; j < rowLen; j++){
+                layerResult.setFlat(outOffset + j, layerResult.getFlat(outOffset + j) / sum);
+            }
         }
         return layerResult;
     }
 
 
     // https://eli.thegreenplace.net/2016/the-softmax-function-and-its-derivative/
-    // the above website details how we can compute the jacobian for softmax functions
-    // here I compute a 2d matrix representing the change in each of the softmax values with respect to each of the
-    // inputs. Therefore it's size is inDim * inDDim
+    // the above website details how we can compute the jacobian for softmax functions.
+    // The jacobian of a softmax instance s is diag(s) - s * s^T, so multiplying the incoming
+    // gradients g by it gives s_j * (g_j - g . s) without forming the inDim * inDim matrix
     @Override
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException {
-        if (jacob.length != layerResult.length || jacob[0].length != layerResult[0].length){
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException {
+        if (!jacob.sameShape(layerResult)){
             throw new InvalidDimensionException("The jacobian must be equal to the result of the layer in size");
         }
-        double[][] softMaxGradientMatrix;
-        double[][] ret = new double[jacob.length][jacob[0].length];
-        for (int i = 0; i < jacob.length; i++){
-            softMaxGradientMatrix = computeGradientMatrix(layerResult[i]);
-            ret[i] = NetUtil.two2OneD(NetUtil.matMult(NetUtil.one2TwoD(jacob[i], 1, jacob[0].length), softMaxGradientMatrix));
+        if (fusedWithLoss){
+            return jacob;
+        }
+        double dot;
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), jacob.getDim(0), jacob.getDim(1));
+        Tensor ret = inGradients;
+        for (int i = 0; i < jacob.getDim(0); i++){
+            dot = 0;
+            for (int j = 0; j < jacob.getDim(1); j++){
+                dot += jacob.get(i, j) * layerResult.get(i, j);
+            }
+            for (int j = 0; j < jacob.getDim(1); j++){
+                ret.set(i, j, layerResult.get(i, j) * (jacob.get(i, j) - dot));
+            }
         }
         return ret;
     }
 
-    // Computes the gradients for each input to each softmax output
-    private double[][] computeGradientMatrix(double[] softMaxInstance){
-        double[][] ret = new double[softMaxInstance.length][softMaxInstance.length];
-        for (int i = 0; i < ret.length; i++){
-            for (int j = 0; j < ret[0].length; j++){
-                if (i != j){
-                    ret[i][j] =  -1 * softMaxInstance[i] * softMaxInstance[j];
-                } else{
-                    ret[i][j] = softMaxInstance[i] * (1 - softMaxInstance[j]);
-                }
-            }
-        }
+    // Set whether the gradients passed to this layer are already with respect to its inputs, as is
+    // the case when the loss function computes the combined gradient of itself and this layer
+    public void setFusedWithLoss(boolean fusedWithLoss){
+        this.fusedWithLoss = fusedWithLoss;
+    }
+
+    public boolean isFusedWithLoss(){
+        return fusedWithLoss;
+    }
+
+    @Override
+    public Layer replicate() throws InvalidDimensionException {
+        SoftMaxLayer ret = new SoftMaxLayer(inDim);
+        ret.fusedWithLoss = fusedWithLoss;
         return ret;
     }
 
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
-        String outStr = "softmax\n";
-        fWrite.write(outStr);
+    public void writeLayer(Writer fWrite) throws IOException {
+        fWrite.write(getMetaLine() + "\n");
+    }
+
+    @Override
+    public String getMetaLine(){
+        return "softmax";
     }
 
     @Override
@@ -3,8 +3,9 @@ package Sequential.Layers.TrainableLayer;
 import Sequential.WeightInitialization.*;
 import Sequential.Util.*;
 import Sequential.SequentialExceptions.*;
+import Sequential.Layers.Layer;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
@@ -13,10 +14,15 @@ import static java.lang.String.format;
 
 public class ConvLayer extends Trainable {
     // Dimensions of filters are: numFilters, depth, height, width
-    private double[][] filters;
-    private double[][] prevFirstMoments;
-    private double[][] prevSecondMoments;
-    private double[][] adjustFilters;
+    private Tensor filters;
+    private Tensor adjustFilters;
+    private Tensor stackedOut;
+    private Tensor formedJacob;
+    private Tensor inGradients;
+    // Formed input of the last forward pass and the batch it was formed from, which the backward pass
+    // reuses instead of forming the same matrix again
+    private Tensor formedIn;
+    private Tensor formedFrom;
     private HeNormal wInit;
     private int vertStride;
     private int horStride;
@@ -45,34 +51,34 @@ public class ConvLayer extends Trainable {
         }
 
         this.filterDim = Arrays.copyOf(filterDim, filterDim.length);
-        filters = new double[inDim[0] * filterDim[0] * filterDim[1] + 1][numFilters];
+        filters = new Tensor(inDim[0] * filterDim[0] * filterDim[1] + 1, numFilters);
         vertStride = strideLength[0];
         horStride = strideLength[1];
         outDim = new int[3];
         setOutDim();
         wInit = new HeNormal();
         wInit.setIn(outDim[1] * outDim[2]);
-        inMap = new int[inDim[0] * inDim[1] * inDim[2]][(filterDim[0] / vertStride + 1) * (filterDim[1] / horStride + 1)][2];
+        // One more column than a value can be mapped to, so every row ends with -1
+        inMap = new int[inDim[0] * inDim[1] * inDim[2]][(filterDim[0] / vertStride + 1) * (filterDim[1] / horStride + 1) + 1][2];
         fillInMap();
 
         // Initialize filter weights
-        for (int i = 0; i < filters.length; i++) {
-            for (int j = 0; j < filters[0].length; j++) {
-                if (i != filters.length - 1){
-                    filters[i][j] = wInit.initializeWeight();
-                }
-                // Biases are in the last row, they should be  0
-                else{
-                    filters[i][j] = 0;
-                }
-            }
+        // Biases are in the last row, they are left at 0
+        double[] fData = filters.getData();
+        for (int i = 0; i < (filters.getDim(0) - 1) * filters.getDim(1); i++) {
+            fData[i] = wInit.initializeWeight();
         }
+    }
 
-        // Initialize past weight adjustments to 0
-        prevFirstMoments = new double[filters.length][filters[0].length];
-        NetUtil.fill2D(prevFirstMoments, 0);
-        prevSecondMoments = new double[filters.length][filters[0].length];
-        NetUtil.fill2D(prevSecondMoments, 0);
+    // Construct a convolutional layer that shares the filters and input map of the given layer
+    private ConvLayer(ConvLayer source) throws InvalidDimensionException{
+        super(source.inDim);
+        this.filterDim = source.filterDim;
+        this.filters = source.filters;
+        this.vertStride = source.vertStride;
+        this.horStride = source.horStride;
+        this.outDim = source.outDim;
+        this.inMap = source.inMap;
     }
 
     // For each index in the flattened 3D input, store in columns the indexes that index is mapped to
@@ -114,122 +120,132 @@ public class ConvLayer extends Trainable {
         }
     }
 
-    // Map the values of the input to the appropriate location in the layer's transformed input matrix
-    private double[][] formedIn(double[] in) throws InvalidDimensionException{
-        if (in.length != inDim[0] * inDim[1] * inDim[2]){
-            throw new InvalidDimensionException("Conv Sequential.Sequential.Layers.Layer: fowardPass: Input size doesn't match layer input dim");
+    // Given a flattened input, return a flattened output representing one convolution
+    // flattened by column wise flattening. Sequential.Sequential.Layers.Layer outputs are stacked
+    public double[] forwardPass(double[] in) throws InvalidDimensionException {
+        Tensor formattedIn = formedBatchIn(new Tensor(in, 1, in.length), null);
+        Tensor ret = filters.like(formattedIn.getDim(0), outDim[0]);
+        backend.matMult(formattedIn, filters, ret);
+        return ret.toPrecision(Precision.DOUBLE).getData();
+    }
+
+    // Map every input of a batch into one stacked formed input matrix, written over the given buffer when it
+    // has the right shape. The rows for input i start at i * (outDim[1] * outDim[2]) so the whole batch can be
+    // convolved with a single multiplication. Every element of the formed input is written
+    private Tensor formedBatchIn(Tensor in, Tensor buffer) throws InvalidDimensionException{
+        if (in.getDim(1) != inDim[0] * inDim[1] * inDim[2]){
+            throw new InvalidDimensionException("Conv Layer: formedBatchIn: Input size doesn't match layer input dim");
         }
-        double[][] ret = new double[outDim[1] * outDim[2]][filters.length];
+        int numPositions = outDim[1] * outDim[2];
+        int numCols = filters.getDim(0);
+        Tensor ret = reuseBuffer(buffer, filters.getPrecision(), in.getDim(0) * numPositions, numCols);
+        double curIn;
         int j;
+        int rowOffset;
 
-        // Assign each input value to its proper location in the formed input
-        for (int i = 0; i < in.length; i++){
-            j = 0;
-            while (inMap[i][j][0] != -1){
-                ret[inMap[i][j][0]][inMap[i][j][1]] = in[i];
-                j++;
+        for (int b = 0; b < in.getDim(0); b++){
+            rowOffset = b * numPositions;
+            // Assign each input value to its proper location in the formed input
+            for (int i = 0; i < in.getDim(1); i++){
+                curIn = in.get(b, i);
+                j = 0;
+                while (inMap[i][j][0] != -1){
+                    ret.setFlat((rowOffset + inMap[i][j][0]) * numCols + inMap[i][j][1], curIn);
+                    j++;
+                }
             }
         }
 
         // Add 1s to the last column of the formed input to account for biases
-        for (int i = 0; i < ret.length; i++){
-            ret[i][ret[0].length - 1] = 1;
+        for (int i = 0; i < ret.getDim(0); i++){
+            ret.setFlat(i * numCols + numCols - 1, 1);
         }
         return ret;
     }
 
-    // Given a flattened input, return a flattened output representing one convolution
-    // flattened by column wise flattening. Sequential.Sequential.Layers.Layer outputs are stacked
-    public double[] forwardPass(double[] in) throws InvalidDimensionException {
-        double[][] formattedIn = formedIn(in);
-        double[] ret = NetUtil.two2OneD(NetUtil.matMult(formattedIn, filters));
-        return ret;
-    }
-
     // Given a batch of inputs, reuturn a batch of outputs after passing the inputs through the layer
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException {
-        layerResult = new double[in.length][outDim[0] * outDim[1] * outDim[2]];
-        double[][] formattedIn;
-
-        // Run every input through the input transformation and perform the linear convolution operation
-        for (int i = 0; i < in.length; i++){
-            formattedIn = formedIn(in[i]);
-            layerResult[i] = NetUtil.two2OneD(NetUtil.matMult(formattedIn, filters));
-        }
-
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException {
+        // Perform the linear convolution operation for the whole batch at once. Each row of the stacked
+        // result is one output position of one input, so viewing it as one row per input gives the
+        // flattened outputs without copying
+        stackedOut = reuseBuffer(stackedOut, filters.getPrecision(), in.getDim(0) * outDim[1] * outDim[2], outDim[0]);
+        formedIn = formedBatchIn(in, formedIn);
+        formedFrom = in;
+        backend.matMult(formedIn, filters, stackedOut);
+        layerResult = stackedOut.reshape(in.getDim(0), outDim[0] * outDim[1] * outDim[2]);
         return layerResult;
     }
 
     // Compute the gradients of this layer's input with respect to the gradients of the
     // loss to this layers output, and compute the gradients of this layers filters with
     // respect to the gradients of the loss with respect to this layer's output
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException{
-        if (jacob.length != prevInput.length){
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException{
+        if (jacob.getDim(0) != prevInput.getDim(0)){
             throw new InvalidDimensionException("Conv: ComputeGradients: Mismatch in batch size with jacobian and given input");
         }
-        adjustFilters = new double[filters.length][filters[0].length];
-        NetUtil.fill2D(adjustFilters, 0);
-        // Each row of above matrix is stacked filters.
-        double[][][] jacobSet = NetUtil.two2ThreeD(jacob, jacob.length, outDim[1] * outDim[2], outDim[0]);
-        double[][] ret = new double[jacob.length][inDim[0] * inDim[1] * inDim[2]];
-        // Aggregate filter gradients with the set of jacobians
-        for (int i = 0; i < jacobSet.length; i++){
-            NetUtil.elAddInc(adjustFilters, computeFilterGradients(jacobSet[i], prevInput[i]));
-            computeInputGradients(ret[i], jacobSet[i]);
-        }
-        return ret;
+        // Each row of the stacked jacobian is the gradient of one output position across all filters.
+        Tensor stackedJacob = jacob.reshape(jacob.getDim(0) * outDim[1] * outDim[2], outDim[0]);
+        inGradients = reuseBuffer(inGradients, jacob.getPrecision(), jacob.getDim(0), inDim[0] * inDim[1] * inDim[2]);
+        adjustFilters = computeFilterGradients(stackedJacob, prevInput);
+        computeInputGradients(inGradients, stackedJacob);
+        return inGradients;
     }
 
-    // Given the jacobian of a single batch's output, and the corresponding batch's input,
-    // compute the gradients for each of the weights in the filter
-    public double[][] computeFilterGradients(double[][] jacobSet, double[] batchIn) throws InvalidDimensionException{
-        return NetUtil.matMult(NetUtil.transpose(formedIn(batchIn)), jacobSet);
+    // Given the stacked jacobian of a batch's output, and the corresponding batch's input,
+    // compute the gradients for each of the weights in the filter summed over the batch. The formed input of
+    // the last forward pass is reused when it was formed from the same batch
+    public Tensor computeFilterGradients(Tensor stackedJacob, Tensor batchIn) throws InvalidDimensionException{
+        Tensor ret = reuseBuffer(adjustFilters, filters.getPrecision(), filters.getDim(0), filters.getDim(1));
+        if (batchIn != formedFrom){
+            formedIn = formedBatchIn(batchIn, formedIn);
+            formedFrom = batchIn;
+        }
+        backend.matMult(formedIn.transpose(), stackedJacob, ret);
+        return ret;
     }
 
-    // Given the jacobian of a single batch's output, compute the gradients for each of the inputs
-    // to the layer and store them in the given ret array
-    public void computeInputGradients(double[] ret, double[][] curJacob) throws InvalidDimensionException{
-        double[][] formedJacob = NetUtil.matMult(curJacob, NetUtil.transpose(filters));
+    // Given the stacked jacobian of a batch's output, compute the gradients for each of the inputs
+    // to the layer and store them in the given ret tensor
+    public void computeInputGradients(Tensor ret, Tensor stackedJacob) throws InvalidDimensionException{
+        formedJacob = reuseBuffer(formedJacob, filters.getPrecision(), stackedJacob.getDim(0), filters.getDim(0));
+        backend.matMult(stackedJacob, filters.transpose(), formedJacob);
+        int numCols = formedJacob.getDim(1);
+        int numPositions = outDim[1] * outDim[2];
+        int rowOffset;
         int j;
         double gradSum;
-        for (int i = 0; i < ret.length; i++){
-            j = 0;
-            gradSum = 0;
-            while (inMap[i][j][0] != -1){
-                gradSum += formedJacob[inMap[i][j][0]][inMap[i][j][1]];
-                j++;
+        for (int b = 0; b < ret.getDim(0); b++){
+            rowOffset = b * numPositions;
+            for (int i = 0; i < ret.getDim(1); i++){
+                j = 0;
+                gradSum = 0;
+                while (inMap[i][j][0] != -1){
+                    gradSum += formedJacob.getFlat((rowOffset + inMap[i][j][0]) * numCols + inMap[i][j][1]);
+                    j++;
+                }
+                ret.set(b, i, gradSum);
             }
-            ret[i] = gradSum;
         }
     }
 
-    // Update the parameters for this layer using a minibatch approach
-    public void updateParamsMiniBatch(double learnRate) throws InvalidDimensionException{
-        // First, multiply each value in adjustFilters by the negative learn rate
-        for (int i = 0; i < adjustFilters.length; i++){
-            for (int j = 0; j < adjustFilters[0].length; j++){
-                adjustFilters[i][j] *= -1 * learnRate;
-            }
-        }
-        // Perform elemnt wise addition on the filter matrix
-        NetUtil.elMulInc(filters, adjustFilters);
+    // Return the filters of this layer. Each column is a flattened filter with its bias in the last row
+    public Tensor getParams(){
+        return filters;
+    }
+
+    // Return the gradients of the loss with respect to this layer's filters from the last backward pass
+    public Tensor getGradients(){
+        return adjustFilters;
     }
 
-    // Update hte parameters for htis layer using an adam approach
-    public void updateParamsAdam(double alpha, double b1, double b2, double e){
-        double[][] firstMoments = new double[filters.length][filters[0].length];
-        double[][] secondMoments = new double[filters.length][filters[0].length];
+    @Override
+    public Layer replicate() throws InvalidDimensionException{
+        return new ConvLayer(this);
+    }
 
-        double adjA = alpha * Math.sqrt(1 - b2)/(1 - b1);
-        for (int i = 0; i < firstMoments.length; i++){
-            for (int j = 0; j < firstMoments[0].length; j++){
-                firstMoments[i][j] = b1 * prevFirstMoments[i][j] + (1 - b1) * adjustFilters[i][j];
-                secondMoments[i][j] = b2 * prevSecondMoments[i][j] + (1 - b2) * Math.pow(adjustFilters[i][j], 2);
-                filters[i][j] -= adjA * firstMoments[i][j] / Math.sqrt(secondMoments[i][j] + e);
-            }
-        }
-        prevFirstMoments = firstMoments;
-        prevSecondMoments = secondMoments;
+    // Store the filters of this layer with the given precision
+    public void setPrecision(Precision precision){
+        filters = filters.toPrecision(precision);
     }
 
     // Returns the output dimensions of this layer
@@ -243,7 +259,7 @@ public class ConvLayer extends Trainable {
     public void printInfo(){
         System.out.println(format("Conv Layer: %4d filters. Filter Size: " + Arrays.toString(filterDim) +
                 " In: " + Arrays.toString(inDim) + " Out: " + Arrays.toString(getOutDim()) + " HorStride: %4d VerStride: %4d",
-                filters.length, horStride, vertStride));
+                filters.getDim(1), horStride, vertStride));
     }
 
     // Print the trining info for this layer
@@ -255,7 +271,7 @@ public class ConvLayer extends Trainable {
 
     // Return the dimensions of the output of this layer
     private void setOutDim(){
-        outDim[0] = filters[0].length;
+        outDim[0] = filters.getDim(1);
         outDim[1] = (inDim[1] - filterDim[0]) / vertStride + 1;
         outDim[2] = (inDim[2] - filterDim[1]) / horStride + 1;
     }
@@ -263,10 +279,8 @@ public class ConvLayer extends Trainable {
     // Given a scanner to a file, fill the parameters of this layer
     @Override
     public void fillParams(Scanner scIn){
-        for (int i = 0; i < filters.length; i++){
-            for (int j = 0; j < filters[0].length; j++){
-                filters[i][j] = scIn.nextDouble();
-            }
+        for (int i = 0; i < filters.size(); i++){
+            filters.setFlat(i, scIn.nextDouble());
         }
         scIn.nextLine();
     }
@@ -276,23 +290,20 @@ public class ConvLayer extends Trainable {
     // -d for pool dimensions, and -s for stride length. Precede these
     // options by writing a c for convolutionsl layer
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
+    public String getMetaLine(){
+        return "conv -n " + filters.getDim(1) + " -d " + filterDim[0] + " " + filterDim[1] +
+                " -s " + vertStride + " " + horStride;
+    }
+
+    @Override
+    public void writeLayer(Writer fWrite) throws IOException {
         StringBuilder outString = new StringBuilder();
-        outString.append("conv -n ");
-        outString.append(filters[0].length);
-        outString.append(" -d ");
-        outString.append(filterDim[0]);
-        outString.append(" ");
-        outString.append(filterDim[1]);
-        outString.append(" -s ");
-        outString.append(vertStride);
-        outString.append(" ");
-        outString.append(horStride);
+        outString.append(getMetaLine());
         outString.append("\n");
         // output the parameters of the layer
-        for (int i = 0; i < filters.length; i++){
-            for (int j = 0; j < filters[0].length; j++){
-                outString.append(filters[i][j]);
+        for (int i = 0; i < filters.getDim(0); i++){
+            for (int j = 0; j < filters.getDim(1); j++){
+                outString.append(filters.get(i, j));
                 outString.append(" ");
             }
             outString.append("\n");
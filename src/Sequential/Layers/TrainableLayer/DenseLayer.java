@@ -3,8 +3,9 @@ package Sequential.Layers.TrainableLayer;
 import Sequential.WeightInitialization.*;
 import Sequential.Util.*;
 import Sequential.SequentialExceptions.*;
+import Sequential.Layers.Layer;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
@@ -15,10 +16,13 @@ public class DenseLayer extends Trainable {
     private int numNodes;
     private int prevSize;
     private HeNormal wInit;
-    private double[][] adjustWeights;
-    private double[][] prevFirstMoments;
-    private double[][] prevSecondMoments;
-    private double[][] weights;
+    private Tensor adjustWeights;
+    private Tensor weights;
+    private Tensor inGradients;
+    // Input of the last forward pass with a column of 1s added and the batch it was copied from, which
+    // the backward pass reuses instead of copying the same batch again
+    private Tensor biasedIn;
+    private Tensor biasedFrom;
 
     private int numWAdjustments = 0;
     private double totalWAdjustment = 0;
@@ -32,113 +36,111 @@ public class DenseLayer extends Trainable {
         prevSize = inDim[0] * inDim[1] * inDim[2];
         wInit = new HeNormal();
         wInit.setIn(prevSize);
-        weights = new double[prevSize + 1][numNodes];
+        weights = new Tensor(prevSize + 1, numNodes);
 
 
         // Initialize layer weights
         // The values of the linear jacobian matrix for the layer is the weights
-        for (int i = 0; i < weights.length; i++){
-            for (int j = 0; j < weights[0].length; j++){
-                if (i != weights.length - 1){
-                    weights[i][j] = wInit.initializeWeight();
-                }
-                // Biases are in the last row, they should be init to 0
-                else {
-                    weights[i][j] = 0;
-                }
-
-            }
+        // Biases are in the last row, they are left at 0
+        double[] wData = weights.getData();
+        for (int i = 0; i < prevSize * numNodes; i++){
+            wData[i] = wInit.initializeWeight();
         }
+    }
 
-        // Initialize prevFirstMoments, and prevSecondMoments to 0
-        prevFirstMoments = new double[weights.length][weights[0].length];
-        NetUtil.fill2D(prevFirstMoments, 0);
-        prevSecondMoments = new double[weights.length][weights[0].length];
-        NetUtil.fill2D(prevSecondMoments, 0);
+    // Construct a dense layer that shares the weights of the given layer
+    private DenseLayer(DenseLayer source) throws InvalidDimensionException{
+        super(source.inDim);
+        this.numNodes = source.numNodes;
+        this.prevSize = source.prevSize;
+        this.weights = source.weights;
     }
 
-    // Add a row to the given two dim array to represent the bias or intercept
-    private double[][] addBiasCol(double[][] in){
-        double[][] ret = new double[in.length][in[0].length + 1];
-        // Copy
-        for (int i = 0; i < in.length; i++){
-            System.arraycopy(in[i], 0, ret[i], 0, in[i].length);
-        }
-        // Add bias
-        for (int i = 0; i < in.length; i++){
-            ret[i][ret[0].length - 1] = 1;
+    // Copy the given batch into the biased input with a column of 1s added to represent the bias or intercept
+    private void addBiasCol(Tensor in){
+        biasedIn = reuseBuffer(biasedIn, weights.getPrecision(), in.getDim(0), in.getDim(1) + 1);
+        biasedFrom = in;
+        Tensor ret = biasedIn;
+        int rowLen = in.getDim(1);
+        for (int i = 0; i < in.getDim(0); i++){
+            // Copy
+            for (int j = 0; j < rowLen; j++){
+                ret.set(i, j, in.get(i, j));
+            }
+            // Add bias
+            ret.set(i, rowLen, 1);
         }
-        return ret;
     }
 
-    // Remove the bias row from the given array (Remove last row)
-    public double[][] removeBiasRow(double[][] in){
-        double[][] ret = new double[in.length - 1][in[0].length];
-        for (int i = 0; i < ret.length; i++){
-            System.arraycopy(in[i], 0, ret[i], 0, ret[i].length);
-        }
-        return ret;
+    // Return a view of the weights without the bias row (the last row)
+    public Tensor removeBiasRow(Tensor in) throws InvalidDimensionException{
+        return in.slice(0, in.getDim(0) - 1);
     }
 
     // Performs a forward pass through the layer with only one input
     @Override
     public double[] forwardPass(double[] in) throws InvalidDimensionException{
-        double[][] twoDIn = new double[1][in.length + 1];
-
-        System.arraycopy(in, 0, twoDIn[0], 0, in.length);
-        twoDIn[0][twoDIn.length] = 1;
-
-        double[][] ret = NetUtil.matMult(twoDIn, weights);
-        return NetUtil.two2OneD(ret);
+        if (in.length != prevSize){
+            throw new InvalidDimensionException("Dense: forwardPass: Input size doesn't match layer input dim");
+        }
+        double[] ret = new double[numNodes];
+        // Start from the biases, then accumulate each input's contribution to every node
+        for (int j = 0; j < numNodes; j++){
+            ret[j] = weights.get(prevSize, j);
+        }
+        for (int i = 0; i < prevSize; i++){
+            for (int j = 0; j < numNodes; j++){
+                ret[j] += in[i] * weights.get(i, j);
+            }
+        }
+        return ret;
     }
 
     // Sends a batch of input through the layer
-    public double[][] forwardBatchPass(double[][] in) throws InvalidDimensionException{
-        // Copy input array into a larger arraay to add a column of biases. Don't fill last col yet
-        double[][] formedIn = addBiasCol(in);
-        layerResult = NetUtil.matMult(formedIn, weights);
+    public Tensor forwardBatchPass(Tensor in) throws InvalidDimensionException{
+        // Copy input into a larger tensor to add a column of biases
+        addBiasCol(in);
+        layerResult = reuseBuffer(layerResult, weights.getPrecision(), in.getDim(0), numNodes);
+        backend.matMult(biasedIn, weights, layerResult);
         return layerResult;
     }
 
     // Compute the gradients of this layer's input with respect to the gradients of the
     // loss to this layers output, and compute the gradients of this layers weights with
     // respect to the gradients of the loss with respect to this layer's output
-    public double[][] computeGradients(double[][] jacob, double[][] prevInput) throws InvalidDimensionException{
-        if (jacob.length != prevInput.length){
+    public Tensor computeGradients(Tensor jacob, Tensor prevInput) throws InvalidDimensionException{
+        if (jacob.getDim(0) != prevInput.getDim(0)){
             throw new InvalidDimensionException("Dense: ComputeGradients: Mismatch in batch size with jacobian and given input");
         }
-        double[][] ret = NetUtil.matMult(jacob, NetUtil.transpose(removeBiasRow(weights)));
-        double[][] formedIn = addBiasCol(prevInput);
-        adjustWeights = NetUtil.matMult(NetUtil.transpose(formedIn), jacob);
-        return ret;
+        inGradients = reuseBuffer(inGradients, weights.getPrecision(), jacob.getDim(0), prevSize);
+        backend.matMult(jacob, removeBiasRow(weights).transpose(), inGradients);
+        // The biased input of the last forward pass is reused when it was copied from the same batch
+        if (prevInput != biasedFrom){
+            addBiasCol(prevInput);
+        }
+        adjustWeights = reuseBuffer(adjustWeights, weights.getPrecision(), prevSize + 1, numNodes);
+        backend.matMult(biasedIn.transpose(), jacob, adjustWeights);
+        return inGradients;
     }
 
-    // Given the gradients of this layers weights, make appropriate adjustments
-    public void updateParamsMiniBatch(double learnRate) throws InvalidDimensionException{
-        for (int i = 0; i < adjustWeights.length; i++){
-            for (int j = 0; j < adjustWeights[0].length; j++){
-                adjustWeights[i][j] *= -1 * learnRate;
-            }
-        }
-        // Perform element weise addition on the weight matrix
-        NetUtil.elAddInc(weights, adjustWeights);
+    // Return the weights of this layer. The bias of each node is in the last row
+    public Tensor getParams(){
+        return weights;
     }
 
-    // Update hte parameters for htis layer using an adam approach
-    public void updateParamsAdam(double alpha, double b1, double b2, double e){
-        double[][] firstMoments = new double[weights.length][weights[0].length];
-        double[][] secondMoments = new double[weights.length][weights[0].length];
+    // Return the gradients of the loss with respect to this layer's weights from the last backward pass
+    public Tensor getGradients(){
+        return adjustWeights;
+    }
 
-        double adjA = alpha * Math.sqrt(1 - b2)/(1 - b1);
-        for (int i = 0; i < firstMoments.length; i++){
-            for (int j = 0; j < firstMoments[0].length; j++){
-                firstMoments[i][j] = b1 * prevFirstMoments[i][j] + (1 - b1) * adjustWeights[i][j];
-                secondMoments[i][j] = b2 * prevSecondMoments[i][j] + (1 - b2) * Math.pow(adjustWeights[i][j], 2);
-                weights[i][j] -= adjA * firstMoments[i][j] / Math.sqrt(secondMoments[i][j] + e);
-            }
-        }
-        prevFirstMoments = firstMoments;
-        prevSecondMoments = secondMoments;
+    @Override
+    public Layer replicate() throws InvalidDimensionException{
+        return new DenseLayer(this);
+    }
+
+    // Store the weights of this layer with the given precision
+    public void setPrecision(Precision precision){
+        weights = weights.toPrecision(precision);
     }
 
     // Returns the output dimensions of the layer
@@ -163,10 +165,8 @@ public class DenseLayer extends Trainable {
 
     // Given a scanner to a file, fill the parameters of this layer
     public void fillParams(Scanner scIn){
-        for (int i = 0; i < weights.length; i++){
-            for (int j = 0; j < weights[0].length; j++){
-                weights[i][j] = scIn.nextDouble();
-            }
+        for (int i = 0; i < weights.size(); i++){
+            weights.setFlat(i, scIn.nextDouble());
         }
         // Git rid of line buffer
         scIn.nextLine();
@@ -177,15 +177,19 @@ public class DenseLayer extends Trainable {
     // -d for pool dimensions, and -s for stride length. Precede these
     // options by writing a d for dense layer
     @Override
-    public void writeLayer(FileWriter fWrite) throws IOException {
+    public String getMetaLine(){
+        return "dense -n " + numNodes;
+    }
+
+    @Override
+    public void writeLayer(Writer fWrite) throws IOException {
         StringBuilder outString = new StringBuilder();
-        outString.append("dense -n ");
-        outString.append(numNodes);
+        outString.append(getMetaLine());
         outString.append("\n");
         // output the parameters of the layer
-        for (int i = 0; i < weights.length; i++){
-            for (int j = 0; j < weights[0].length; j++){
-                outString.append(weights[i][j]);
+        for (int i = 0; i < weights.getDim(0); i++){
+            for (int j = 0; j < weights.getDim(1); j++){
+                outString.append(weights.get(i, j));
                 outString.append(" ");
             }
             outString.append("\n");
@@ -2,6 +2,8 @@ package Sequential.Layers.TrainableLayer;
 
 import Sequential.Layers.Layer;
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
 
 import java.util.Scanner;
 
@@ -16,6 +18,9 @@ public abstract class Trainable extends Layer {
 
     public abstract void printTrainInfo();
     public abstract void fillParams(Scanner scIn);
-    public abstract void updateParamsMiniBatch(double learnRate) throws InvalidDimensionException;
-    public abstract void updateParamsAdam(double alpha, double b1, double b2, double e);
+    public abstract void setPrecision(Precision precision);
+    // The parameters of the layer and the gradients of the loss with respect to them share a shape,
+    // and are updated by the optimizer of the network
+    public abstract Tensor getParams();
+    public abstract Tensor getGradients();
 }
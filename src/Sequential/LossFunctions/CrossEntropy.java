@@ -4,8 +4,9 @@
 package Sequential.LossFunctions;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 
 public class CrossEntropy implements LossFunction{
@@ -36,7 +37,48 @@ public class CrossEntropy implements LossFunction{
     }
 
     @Override
-    public void writeFunc(FileWriter fWrite) throws IOException {
+    public double calculateLoss(Tensor expected, Tensor actual) throws InvalidDimensionException {
+        if (!expected.sameShape(actual)){
+            throw new InvalidDimensionException("Expected values must be of the same dimensionality " +
+                    "as the output of the network");
+        }
+        double total = 0;
+        for (int i = 0; i < expected.getDim(0); i++){
+            total += expected.get(i) * Math.log10(actual.get(i));
+        }
+        return total * -1;
+    }
+
+    @Override
+    public void calculatePDerivatives(Tensor expected, Tensor actual, Tensor ret) throws InvalidDimensionException {
+        if (!expected.sameShape(actual) || !expected.sameShape(ret)){
+            throw new InvalidDimensionException("Expected values must be of the same dimensionality " +
+                    "as the output of the network");
+        }
+        for (int i = 0; i < ret.getDim(0); i++){
+            ret.set(i, -1 * expected.get(i) / (actual.get(i) * Math.log(10)));
+        }
+    }
+
+    // Set ret to the partial derivatives of the loss with respect to the inputs of a softmax layer whose
+    // output is actual. Combining the derivative of the loss with the softmax jacobian leaves
+    // (actual * sum(expected) - expected) / ln(10), which is (actual - expected) / ln(10) for one hot labels
+    public void calculateSoftMaxPDerivatives(Tensor expected, Tensor actual, Tensor ret) throws InvalidDimensionException {
+        if (!expected.sameShape(actual) || !expected.sameShape(ret)){
+            throw new InvalidDimensionException("Expected values must be of the same dimensionality " +
+                    "as the output of the network");
+        }
+        double expectedSum = 0;
+        for (int i = 0; i < expected.getDim(0); i++){
+            expectedSum += expected.get(i);
+        }
+        for (int i = 0; i < ret.getDim(0); i++){
+            ret.set(i, (actual.get(i) * expectedSum - expected.get(i)) / Math.log(10));
+        }
+    }
+
+    @Override
+    public void writeFunc(Writer fWrite) throws IOException {
         fWrite.write("crossEntropy\n");
     }
 }
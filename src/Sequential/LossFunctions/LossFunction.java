@@ -4,8 +4,9 @@
 package Sequential.LossFunctions;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 
 public interface LossFunction {
@@ -28,9 +29,27 @@ public interface LossFunction {
     public double[] calculatePDerivatives(double[] expected, double[] actual) throws InvalidDimensionException;
 
     /**
-     * Serialize the loss function to the file pointed to by the given FileWriter.
-     * @param fWrite FileWriter object that should be written to.
+     * Get the loss resulting from a single foward pass through the network.
+     * @param expected Rank 1 tensor of expected outputs.
+     * @param actual Rank 1 tensor of actual outputs.
+     * @return The quantity of loss between the expected and actual outputs.
+     * @throws InvalidDimensionException
+     */
+    public double calculateLoss(Tensor expected, Tensor actual) throws InvalidDimensionException;
+
+    /**
+     * Get the partial of the loss with respect to each of the outputs of the network.
+     * @param expected Rank 1 tensor of expected outputs.
+     * @param actual Rank 1 tensor of actual outputs.
+     * @param ret Rank 1 tensor the partial derivatives should be stored in.
+     * @throws InvalidDimensionException
+     */
+    public void calculatePDerivatives(Tensor expected, Tensor actual, Tensor ret) throws InvalidDimensionException;
+
+    /**
+     * Serialize the loss function to the given Writer.
+     * @param fWrite Writer that should be written to.
      * @throws IOException
      */
-    public void writeFunc(FileWriter fWrite) throws IOException;
+    public void writeFunc(Writer fWrite) throws IOException;
 }
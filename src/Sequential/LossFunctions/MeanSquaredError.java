@@ -4,8 +4,9 @@
 package Sequential.LossFunctions;
 
 import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 
 public class MeanSquaredError implements LossFunction {
@@ -34,7 +35,29 @@ public class MeanSquaredError implements LossFunction {
         return dMSE;
     }
 
-    public void writeFunc(FileWriter fWrite) throws IOException {
+    public double calculateLoss (Tensor expected, Tensor actual) throws InvalidDimensionException{
+        if (!expected.sameShape(actual)){
+            throw new InvalidDimensionException("Expected values must be of the same dimensionality " +
+                    "as the output of the network");
+        }
+        double totLoss = 0;
+        for (int i = 0; i < expected.getDim(0); i++){
+            totLoss += Math.pow((expected.get(i) - actual.get(i)), 2);
+        }
+        return totLoss / expected.getDim(0);
+    }
+
+    public void calculatePDerivatives (Tensor expected, Tensor actual, Tensor ret) throws InvalidDimensionException{
+        if (!expected.sameShape(actual) || !expected.sameShape(ret)){
+            throw new InvalidDimensionException("Expected values must be of the same dimensionality " +
+                    "as the output of the network");
+        }
+        for (int i = 0; i < ret.getDim(0); i++){
+           ret.set(i, -2 * (expected.get(i) - actual.get(i)) / expected.getDim(0));
+        }
+    }
+
+    public void writeFunc(Writer fWrite) throws IOException {
         fWrite.write("meanSquaredError\n");
     }
 }
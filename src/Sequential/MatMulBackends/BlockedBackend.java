@@ -0,0 +1,117 @@
+package Sequential.MatMulBackends;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.NetUtil;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
+
+import java.util.Arrays;
+
+/**
+ * Pure java matrix multiplication that works on square blocks of the operands at a time so that
+ * the rows of the right operand and the output being worked on stay in cache.
+ */
+public class BlockedBackend implements MatMulBackend {
+    private int blockSize;
+
+    /**
+     * Constructs a new BlockedBackend that uses blocks of 64 by 64 elements.
+     */
+    public BlockedBackend(){
+        this.blockSize = 64;
+    }
+
+    /**
+     * Constructs a new BlockedBackend.
+     * @param blockSize Number of rows and columns in each block of the operands.
+     */
+    public BlockedBackend(int blockSize){
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void matMult(Tensor m1, Tensor m2, Tensor out) throws InvalidDimensionException {
+        NetUtil.checkMatMult(m1, m2, out);
+        m1 = m1.toPrecision(out.getPrecision());
+        m2 = m2.toPrecision(out.getPrecision());
+        // The inner loop walks along the rows of m2, so they must be stored next to each other
+        if (m2.getDim(1) > 1 && m2.getStride(1) != 1){
+            m2 = m2.copy();
+        }
+        if (out.getPrecision() == Precision.FLOAT){
+            multFloat(m1, m2, out.getFloatData(), out.getDim(0), m1.getDim(1), out.getDim(1));
+        } else {
+            multDouble(m1, m2, out.getData(), out.getDim(0), m1.getDim(1), out.getDim(1));
+        }
+    }
+
+    // Multiply blocks of m1 and m2 into the row major output array
+    private void multDouble(Tensor m1, Tensor m2, double[] c, int rows, int inner, int cols){
+        double[] a = m1.getData();
+        double[] b = m2.getData();
+        int aRowStride = m1.getStride(0);
+        int aColStride = m1.getStride(1);
+        int bRowStride = m2.getStride(0);
+        double aVal;
+        int aRow;
+        int bRow;
+        int cRow;
+
+        Arrays.fill(c, 0, rows * cols, 0);
+        for (int ii = 0; ii < rows; ii += blockSize){
+            int iEnd = Math.min(ii + blockSize, rows);
+            for (int kk = 0; kk < inner; kk += blockSize){
+                int kEnd = Math.min(kk + blockSize, inner);
+                for (int jj = 0; jj < cols; jj += blockSize){
+                    int jEnd = Math.min(jj + blockSize, cols);
+                    for (int i = ii; i < iEnd; i++){
+                        aRow = m1.getOffset() + i * aRowStride;
+                        cRow = i * cols;
+                        for (int k = kk; k < kEnd; k++){
+                            aVal = a[aRow + k * aColStride];
+                            bRow = m2.getOffset() + k * bRowStride;
+                            for (int j = jj; j < jEnd; j++){
+                                c[cRow + j] += aVal * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Multiply blocks of m1 and m2 into the row major output array
+    private void multFloat(Tensor m1, Tensor m2, float[] c, int rows, int inner, int cols){
+        float[] a = m1.getFloatData();
+        float[] b = m2.getFloatData();
+        int aRowStride = m1.getStride(0);
+        int aColStride = m1.getStride(1);
+        int bRowStride = m2.getStride(0);
+        float aVal;
+        int aRow;
+        int bRow;
+        int cRow;
+
+        Arrays.fill(c, 0, rows * cols, 0);
+        for (int ii = 0; ii < rows; ii += blockSize){
+            int iEnd = Math.min(ii + blockSize, rows);
+            for (int kk = 0; kk < inner; kk += blockSize){
+                int kEnd = Math.min(kk + blockSize, inner);
+                for (int jj = 0; jj < cols; jj += blockSize){
+                    int jEnd = Math.min(jj + blockSize, cols);
+                    for (int i = ii; i < iEnd; i++){
+                        aRow = m1.getOffset() + i * aRowStride;
+                        cRow = i * cols;
+                        for (int k = kk; k < kEnd; k++){
+                            aVal = a[aRow + k * aColStride];
+                            bRow = m2.getOffset() + k * bRowStride;
+                            for (int j = jj; j < jEnd; j++){
+                                c[cRow + j] += aVal * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package Sequential.MatMulBackends;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.NetUtil;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.FMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.CommonOps_FDRM;
+
+/**
+ * Multiplies matrices with ejml by wrapping the data of the operands and the output directly in
+ * DMatrixRMaj or FMatrixRMaj objects. Compact operands and transposed views of them are never copied.
+ */
+public class EjmlBackend implements MatMulBackend {
+
+    @Override
+    public void matMult(Tensor m1, Tensor m2, Tensor out) throws InvalidDimensionException {
+        NetUtil.checkMatMult(m1, m2, out);
+        boolean transA = isTransposedView(m1);
+        boolean transB = isTransposedView(m2);
+        if (transA){
+            m1 = m1.transpose();
+        }
+        if (transB){
+            m2 = m2.transpose();
+        }
+
+        if (out.getPrecision() == Precision.FLOAT){
+            FMatrixRMaj c = FMatrixRMaj.wrap(out.getDim(0), out.getDim(1), out.getFloatData());
+            FMatrixRMaj a = toFloatMatrix(m1);
+            FMatrixRMaj b = toFloatMatrix(m2);
+            if (transA && transB){
+                CommonOps_FDRM.multTransAB(a, b, c);
+            } else if (transA){
+                CommonOps_FDRM.multTransA(a, b, c);
+            } else if (transB){
+                CommonOps_FDRM.multTransB(a, b, c);
+            } else {
+                CommonOps_FDRM.mult(a, b, c);
+            }
+            return;
+        }
+
+        DMatrixRMaj c = DMatrixRMaj.wrap(out.getDim(0), out.getDim(1), out.getData());
+        DMatrixRMaj a = toMatrix(m1);
+        DMatrixRMaj b = toMatrix(m2);
+        if (transA && transB){
+            CommonOps_DDRM.multTransAB(a, b, c);
+        } else if (transA){
+            CommonOps_DDRM.multTransA(a, b, c);
+        } else if (transB){
+            CommonOps_DDRM.multTransB(a, b, c);
+        } else {
+            CommonOps_DDRM.mult(a, b, c);
+        }
+    }
+
+    // Return true if the given rank 2 tensor is the transpose of a compact tensor
+    private boolean isTransposedView(Tensor m){
+        return !m.isContiguous() && m.transpose().isCompact();
+    }
+
+    // Wrap a rank 2 tensor as a double precision ejml matrix. The data is only copied if the tensor is
+    // single precision or does not start at the beginning of its underlying array
+    private DMatrixRMaj toMatrix(Tensor m){
+        m = m.toPrecision(Precision.DOUBLE);
+        if (!m.isCompact()){
+            m = m.copy();
+        }
+        return DMatrixRMaj.wrap(m.getDim(0), m.getDim(1), m.getData());
+    }
+
+    // Wrap a rank 2 tensor as a single precision ejml matrix. The data is only copied if the tensor is
+    // double precision or does not start at the beginning of its underlying array
+    private FMatrixRMaj toFloatMatrix(Tensor m){
+        m = m.toPrecision(Precision.FLOAT);
+        if (!m.isCompact()){
+            m = m.copy();
+        }
+        return FMatrixRMaj.wrap(m.getDim(0), m.getDim(1), m.getFloatData());
+    }
+}
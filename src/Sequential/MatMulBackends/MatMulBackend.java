@@ -0,0 +1,20 @@
+package Sequential.MatMulBackends;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.Tensor;
+
+/**
+ * Kernel used by the layers of a network to multiply matrices.
+ */
+public interface MatMulBackend {
+    /**
+     * Multiply two rank 2 tensors and store the result in the given output tensor. Either operand may be a
+     * transposed view. Every element of the output is overwritten, and the multiplication is done with the
+     * precision of the output.
+     * @param m1 Left operand of the multiplication.
+     * @param m2 Right operand of the multiplication.
+     * @param out Compact tensor with as many rows as m1 and as many columns as m2 to store the result in.
+     * @throws InvalidDimensionException
+     */
+    public void matMult(Tensor m1, Tensor m2, Tensor out) throws InvalidDimensionException;
+}
@@ -0,0 +1,24 @@
+package Sequential.MatMulBackends;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.NetUtil;
+import Sequential.Util.Tensor;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Multiplies matrices by copying the operands into SimpleMatrix objects, multiplying them, and copying the
+ * result into the output. This is how the network originally multiplied matrices, and is kept as a reference.
+ */
+public class SimpleMatrixBackend implements MatMulBackend {
+
+    @Override
+    public void matMult(Tensor m1, Tensor m2, Tensor out) throws InvalidDimensionException {
+        NetUtil.checkMatMult(m1, m2, out);
+        SimpleMatrix a = new SimpleMatrix(m1.toRows());
+        SimpleMatrix b = new SimpleMatrix(m2.toRows());
+        double[] result = a.mult(b).getDDRM().data;
+        for (int i = 0; i < out.size(); i++){
+            out.setFlat(i, result[i]);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package Sequential.Monitoring;
+
+import Sequential.SequentialExceptions.InvalidOperationException;
+
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the throughput and latency of the predictions made with a network through JMX. Every
+ * InferenceSession created from a network with a monitor reports its batches to it, and every
+ * MicroBatcher reports its requests, from any number of threads at once into lock free counters.
+ * Attach a monitor with Sequential.setInferenceMonitor before creating sessions, and publish it with register.
+ */
+public class InferenceMonitor implements InferenceMonitorMXBean {
+    private RateMeter predictions = new RateMeter();
+    private LongAdder batches = new LongAdder();
+    private LongAdder failures = new LongAdder();
+    private LatencyHistogram batchLatency = new LatencyHistogram();
+    private LatencyHistogram requestLatency = new LatencyHistogram();
+    private ObjectName objectName;
+
+    /**
+     * Register this monitor with the platform MBean server as Sequential:type=Inference,name=&lt;name&gt;.
+     * @param name Name distinguishing this model from others in the same JVM.
+     * @throws InvalidOperationException If the name is taken or the monitor is already registered.
+     */
+    public synchronized void register(String name) throws InvalidOperationException{
+        if (objectName != null){
+            throw new InvalidOperationException("InferenceMonitor: Already registered as " + objectName);
+        }
+        objectName = MBeans.register(this, "Inference", name);
+    }
+
+    /**
+     * Remove this monitor from the platform MBean server, if it is registered.
+     * @throws InvalidOperationException
+     */
+    public synchronized void unregister() throws InvalidOperationException{
+        if (objectName != null){
+            MBeans.unregister(objectName);
+            objectName = null;
+        }
+    }
+
+    // Called by a session after it passes a batch of the given size through the network
+    public void batchFinished(int batchSize, long nanos){
+        predictions.mark(batchSize);
+        batches.increment();
+        batchLatency.record(nanos);
+    }
+
+    // Called by a micro batcher when a request's prediction is ready, with the time since it was submitted
+    public void requestFinished(long nanos){
+        requestLatency.record(nanos);
+    }
+
+    // Called when the predictions of the given number of requests fail
+    public void requestsFailed(int n){
+        failures.add(n);
+    }
+
+    public long getPredictions(){
+        return predictions.getCount();
+    }
+
+    public double getPredictionsPerSecond(){
+        return predictions.getRate();
+    }
+
+    public long getBatches(){
+        return batches.sum();
+    }
+
+    public double getAverageBatchSize(){
+        long numBatches = batches.sum();
+        return numBatches == 0 ? 0 : predictions.getCount() / (double) numBatches;
+    }
+
+    public double getBatchLatencyP50Millis(){
+        return batchLatency.getPercentile(0.5) / 1e6;
+    }
+
+    public double getBatchLatencyP99Millis(){
+        return batchLatency.getPercentile(0.99) / 1e6;
+    }
+
+    public double getRequestLatencyP50Millis(){
+        return requestLatency.getPercentile(0.5) / 1e6;
+    }
+
+    public double getRequestLatencyP99Millis(){
+        return requestLatency.getPercentile(0.99) / 1e6;
+    }
+
+    public long getFailures(){
+        return failures.sum();
+    }
+
+    public void resetLatencies(){
+        batchLatency.reset();
+        requestLatency.reset();
+    }
+}
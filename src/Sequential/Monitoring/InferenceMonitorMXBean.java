@@ -0,0 +1,66 @@
+package Sequential.Monitoring;
+
+/**
+ * Attributes of the predictions made with a network that an InferenceMonitor publishes through JMX.
+ */
+public interface InferenceMonitorMXBean {
+    /**
+     * Return the number of inputs predicted since monitoring started.
+     * @return The number of predictions.
+     */
+    long getPredictions();
+
+    /**
+     * Return the moving average of inputs predicted per second over about the last minute.
+     * @return The throughput of inference.
+     */
+    double getPredictionsPerSecond();
+
+    /**
+     * Return the number of batches passed through the network since monitoring started.
+     * @return The number of batches.
+     */
+    long getBatches();
+
+    /**
+     * Return the average number of inputs in each batch.
+     * @return The average batch size, or 0 before the first batch.
+     */
+    double getAverageBatchSize();
+
+    /**
+     * Return the median time a batch takes to pass through the network.
+     * @return The median batch latency in milliseconds.
+     */
+    double getBatchLatencyP50Millis();
+
+    /**
+     * Return the 99th percentile of the time a batch takes to pass through the network.
+     * @return The 99th percentile batch latency in milliseconds.
+     */
+    double getBatchLatencyP99Millis();
+
+    /**
+     * Return the median time from a request being submitted to a micro batcher to its prediction being ready,
+     * including the time it waited for its batch.
+     * @return The median request latency in milliseconds.
+     */
+    double getRequestLatencyP50Millis();
+
+    /**
+     * Return the 99th percentile of the time from a request being submitted to its prediction being ready.
+     * @return The 99th percentile request latency in milliseconds.
+     */
+    double getRequestLatencyP99Millis();
+
+    /**
+     * Return the number of requests whose prediction failed.
+     * @return The number of failures.
+     */
+    long getFailures();
+
+    /**
+     * Forget the latencies recorded so far, so the percentiles only cover predictions from now on.
+     */
+    void resetLatencies();
+}
@@ -0,0 +1,72 @@
+package Sequential.Monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds that any number of threads can record into without locking.
+ * Latencies are counted in buckets that split every power of two into eight, so a percentile is
+ * reported to within about six percent of the true latency.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    // Count one latency
+    public void record(long nanos){
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    // Return the latency in nanoseconds below which the given fraction of the recorded latencies fall,
+    // or 0 if none have been recorded
+    public double getPercentile(double fraction){
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            total += counts.get(i);
+        }
+        if (total == 0){
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            seen += counts.get(i);
+            if (seen >= target){
+                return middle(i);
+            }
+        }
+        // Latencies recorded while counting may leave the target out of reach
+        return middle(NUM_BUCKETS - 1);
+    }
+
+    // Forget every recorded latency
+    public void reset(){
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            counts.set(i, 0);
+        }
+    }
+
+    // Values below SUB_BUCKETS have a bucket each. Larger values are bucketed by their highest bit and the
+    // SUB_BUCKET_BITS bits after it
+    private static int bucket(long nanos){
+        if (nanos < SUB_BUCKETS){
+            return (int) nanos;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Return the value in the middle of the range counted by a bucket
+    private static double middle(int bucket){
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        double width = Math.pow(2, exp - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + sub) * width + width / 2;
+    }
+}
@@ -0,0 +1,45 @@
+package Sequential.Monitoring;
+
+import Sequential.Layers.Layer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Arrays;
+
+/**
+ * Flight recorder event for a batch passing forward, or its gradients passing backward, through one layer.
+ */
+@Name("Sequential.Layer")
+@Label("Layer Pass")
+@Category({"Sequential", "Layers"})
+@Description("A batch passing forward or backward through one layer of a network")
+@StackTrace(false)
+public class LayerEvent extends jdk.jfr.Event {
+    @Label("Layer Type")
+    public String layerType;
+
+    @Label("Phase")
+    @Description("forward or backward")
+    public String phase;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Input Shape")
+    public String inShape;
+
+    @Label("Output Shape")
+    public String outShape;
+
+    // Fill in the fields describing the layer and pass
+    public void describe(Layer layer, String phase, int batchSize){
+        this.layerType = layer.getClass().getSimpleName();
+        this.phase = phase;
+        this.batchSize = batchSize;
+        this.inShape = Arrays.toString(layer.getInDim());
+        this.outShape = Arrays.toString(layer.getOutDim());
+    }
+}
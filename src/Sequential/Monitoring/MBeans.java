@@ -0,0 +1,30 @@
+package Sequential.Monitoring;
+
+import Sequential.SequentialExceptions.InvalidOperationException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+// Registers monitors with the platform MBean server under the domain "Sequential"
+class MBeans {
+    static ObjectName register(Object bean, String type, String name) throws InvalidOperationException{
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName("Sequential:type=" + type + ",name=" + ObjectName.quote(name));
+            server.registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e){
+            throw new InvalidOperationException("Could not register " + type + " MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    static void unregister(ObjectName objectName) throws InvalidOperationException{
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e){
+            throw new InvalidOperationException("Could not unregister MBean " + objectName + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package Sequential.Monitoring;
+
+import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Sequential;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Flight recorder event for a network being saved to or loaded from a file.
+ */
+@Name("Sequential.NetworkIO")
+@Label("Network Load or Save")
+@Category({"Sequential", "Serialization"})
+@Description("A network being loaded from or saved to a file")
+public class NetworkIOEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    @Description("load or save")
+    public String operation;
+
+    @Label("Format")
+    @Description("text or binary")
+    public String format;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Layers")
+    public int layers;
+
+    @Label("Parameters")
+    public long parameters;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileSize;
+
+    // Fill in the fields describing the operation and the network that was loaded or saved
+    public void describe(String operation, String format, String path, Sequential net){
+        this.operation = operation;
+        this.format = format;
+        this.path = path;
+        ArrayList<Layer> netLayers = net.getLayers();
+        layers = netLayers.size();
+        for (int i = 0; i < netLayers.size(); i++){
+            if (netLayers.get(i) instanceof Trainable){
+                parameters += ((Trainable) netLayers.get(i)).getParams().size();
+            }
+        }
+        fileSize = new File(path).length();
+    }
+}
@@ -0,0 +1,27 @@
+package Sequential.Monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for an optimizer updating every parameter of a network from its gradients.
+ */
+@Name("Sequential.OptimizerStep")
+@Label("Optimizer Step")
+@Category({"Sequential", "Training"})
+@Description("An optimizer updating the parameters of a network from their gradients")
+@StackTrace(false)
+public class OptimizerStepEvent extends jdk.jfr.Event {
+    @Label("Optimizer")
+    public String optimizer;
+
+    @Label("Parameters")
+    public long parameters;
+
+    @Label("Buffers")
+    @Description("Number of trainable layers whose parameters were updated")
+    public int buffers;
+}
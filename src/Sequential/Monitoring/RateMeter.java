@@ -0,0 +1,64 @@
+package Sequential.Monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the rate of events per second as a moving average over about the last minute, which any
+ * number of threads can mark events on without locking. Events are counted as they happen, and every
+ * five seconds the count of the interval is folded into the average by whichever thread first notices
+ * that the interval is over.
+ */
+public class RateMeter {
+    private static final long TICK_NANOS = 5000000000L;
+    private static final double TICK_SECONDS = TICK_NANOS / 1e9;
+    // Weight of the newest interval in a moving average over one minute
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60);
+
+    private LongAdder uncounted = new LongAdder();
+    private LongAdder count = new LongAdder();
+    private AtomicLong lastTick = new AtomicLong(System.nanoTime());
+    private volatile double rate;
+    private volatile boolean initialized;
+
+    // Count the given number of events
+    public void mark(long n){
+        tickIfDue();
+        uncounted.add(n);
+        count.add(n);
+    }
+
+    // Return the moving average of events per second
+    public double getRate(){
+        tickIfDue();
+        return rate;
+    }
+
+    // Return the number of events counted since the meter was made
+    public long getCount(){
+        return count.sum();
+    }
+
+    // Fold every finished interval into the average. Only the thread that moves the last tick forward
+    // folds them, so no interval is counted twice
+    private void tickIfDue(){
+        long old = lastTick.get();
+        long age = System.nanoTime() - old;
+        if (age < TICK_NANOS){
+            return;
+        }
+        long ticks = age / TICK_NANOS;
+        if (!lastTick.compareAndSet(old, old + ticks * TICK_NANOS)){
+            return;
+        }
+        for (long i = 0; i < ticks; i++){
+            double instant = (i == 0 ? uncounted.sumThenReset() : 0) / TICK_SECONDS;
+            if (initialized){
+                rate += ALPHA * (instant - rate);
+            } else {
+                rate = instant;
+                initialized = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package Sequential.Monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one training batch, from passing it forward to updating the parameters.
+ */
+@Name("Sequential.TrainingBatch")
+@Label("Training Batch")
+@Category({"Sequential", "Training"})
+@Description("One batch passed forward and backward through a network, followed by a parameter update")
+@StackTrace(false)
+public class TrainingBatchEvent extends jdk.jfr.Event {
+    @Label("Epoch")
+    @Description("Epoch of the batch, starting at 1")
+    public int epoch;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Loss")
+    @Description("Average loss over the batches of the epoch so far")
+    public double loss;
+}
@@ -0,0 +1,174 @@
+package Sequential.Monitoring;
+
+import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
+
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Publishes the progress and throughput of training a network through JMX, so that long running jobs can
+ * be watched and alerted on without parsing their output. The optimizer reports to the monitor of the
+ * network after every batch, from the training thread, and the monitor only writes to volatile fields and
+ * lock free counters, so reporting does not slow training. Attach a monitor with
+ * Sequential.setTrainingMonitor and publish it with register.
+ */
+public class TrainingMonitor implements TrainingMonitorMXBean {
+    private RateMeter samples = new RateMeter();
+    private LatencyHistogram batchLatency = new LatencyHistogram();
+    private Sequential net;
+    private ObjectName objectName;
+    private volatile int epoch;
+    private volatile int epochs;
+    private volatile int batch;
+    private volatile int batchesPerEpoch;
+    private volatile double loss = Double.NaN;
+    private volatile double accuracy = Double.NaN;
+    private volatile long parameterCount;
+    private volatile long activationBytes;
+
+    /**
+     * Register this monitor with the platform MBean server as Sequential:type=Training,name=&lt;name&gt;.
+     * @param name Name distinguishing this training run from others in the same JVM.
+     * @throws InvalidOperationException If the name is taken or the monitor is already registered.
+     */
+    public synchronized void register(String name) throws InvalidOperationException{
+        if (objectName != null){
+            throw new InvalidOperationException("TrainingMonitor: Already registered as " + objectName);
+        }
+        objectName = MBeans.register(this, "Training", name);
+    }
+
+    /**
+     * Remove this monitor from the platform MBean server, if it is registered.
+     * @throws InvalidOperationException
+     */
+    public synchronized void unregister() throws InvalidOperationException{
+        if (objectName != null){
+            MBeans.unregister(objectName);
+            objectName = null;
+        }
+    }
+
+    // Called by the optimizer before it trains the network for the given number of epochs
+    public void trainingStarted(Sequential net, int epochs, int batchesPerEpoch){
+        this.net = net;
+        this.epochs = epochs;
+        this.batchesPerEpoch = batchesPerEpoch;
+        long params = 0;
+        ArrayList<Layer> layers = net.getLayers();
+        for (int i = 0; i < layers.size(); i++){
+            if (layers.get(i) instanceof Trainable){
+                params += ((Trainable) layers.get(i)).getParams().size();
+            }
+        }
+        parameterCount = params;
+    }
+
+    // Called by the optimizer at the start of each epoch, counted from 0
+    public void epochStarted(int epoch){
+        this.epoch = epoch + 1;
+        batch = 0;
+        loss = Double.NaN;
+        accuracy = Double.NaN;
+    }
+
+    // Called by the optimizer after each batch with the size of the batch, the time it took, and the
+    // running loss and accuracy of the epoch
+    public void batchFinished(int batchSize, long nanos, double loss, double accuracy){
+        samples.mark(batchSize);
+        batchLatency.record(nanos);
+        this.loss = loss;
+        this.accuracy = accuracy;
+        // Layer results are allocated by the first batch of an epoch, and kept for the rest of it
+        if (batch++ == 0){
+            activationBytes = activationBytes(net);
+        }
+    }
+
+    public int getEpoch(){
+        return epoch;
+    }
+
+    public int getEpochs(){
+        return epochs;
+    }
+
+    public int getBatch(){
+        return batch;
+    }
+
+    public int getBatchesPerEpoch(){
+        return batchesPerEpoch;
+    }
+
+    public long getSamples(){
+        return samples.getCount();
+    }
+
+    public double getSamplesPerSecond(){
+        return samples.getRate();
+    }
+
+    public double getBatchLatencyP50Millis(){
+        return batchLatency.getPercentile(0.5) / 1e6;
+    }
+
+    public double getBatchLatencyP95Millis(){
+        return batchLatency.getPercentile(0.95) / 1e6;
+    }
+
+    public double getBatchLatencyP99Millis(){
+        return batchLatency.getPercentile(0.99) / 1e6;
+    }
+
+    public double getLoss(){
+        return loss;
+    }
+
+    public double getAccuracy(){
+        return accuracy;
+    }
+
+    public long getParameterCount(){
+        return parameterCount;
+    }
+
+    public long getActivationBytes(){
+        return activationBytes;
+    }
+
+    public void resetLatencies(){
+        batchLatency.reset();
+    }
+
+    // Sum the sizes of the results the layers of the network hold. A relu activated in place holds the same
+    // buffer as the layer before it, and a result may be a view of another, so each backing array is
+    // counted once
+    private static long activationBytes(Sequential net){
+        long ret = 0;
+        Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        ArrayList<Layer> layers = net.getLayers();
+        for (int i = 0; i < layers.size(); i++){
+            Tensor result = layers.get(i).getLayerResult();
+            if (result == null){
+                continue;
+            }
+            if (result.getPrecision() == Precision.DOUBLE){
+                if (counted.add(result.getData())){
+                    ret += (long) result.getData().length * 8;
+                }
+            } else if (counted.add(result.getFloatData())){
+                ret += (long) result.getFloatData().length * 4;
+            }
+        }
+        return ret;
+    }
+}
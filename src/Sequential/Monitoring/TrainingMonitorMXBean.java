@@ -0,0 +1,89 @@
+package Sequential.Monitoring;
+
+/**
+ * Attributes of a training run that a TrainingMonitor publishes through JMX.
+ */
+public interface TrainingMonitorMXBean {
+    /**
+     * Return the epoch being trained, starting at 1.
+     * @return The current epoch, or 0 before training starts.
+     */
+    int getEpoch();
+
+    /**
+     * Return the number of epochs the network is being trained for.
+     * @return The number of epochs.
+     */
+    int getEpochs();
+
+    /**
+     * Return the number of batches finished in the current epoch.
+     * @return The current batch.
+     */
+    int getBatch();
+
+    /**
+     * Return the number of batches in every epoch.
+     * @return The number of batches per epoch.
+     */
+    int getBatchesPerEpoch();
+
+    /**
+     * Return the number of examples trained on since monitoring started.
+     * @return The number of examples.
+     */
+    long getSamples();
+
+    /**
+     * Return the moving average of examples trained on per second over about the last minute.
+     * @return The throughput of training.
+     */
+    double getSamplesPerSecond();
+
+    /**
+     * Return the median time a batch takes to pass forward and backward and update the parameters.
+     * @return The median batch latency in milliseconds.
+     */
+    double getBatchLatencyP50Millis();
+
+    /**
+     * Return the 95th percentile of the time a batch takes to train.
+     * @return The 95th percentile batch latency in milliseconds.
+     */
+    double getBatchLatencyP95Millis();
+
+    /**
+     * Return the 99th percentile of the time a batch takes to train.
+     * @return The 99th percentile batch latency in milliseconds.
+     */
+    double getBatchLatencyP99Millis();
+
+    /**
+     * Return the average loss over the batches of the current epoch so far.
+     * @return The running loss.
+     */
+    double getLoss();
+
+    /**
+     * Return the average accuracy over the batches of the current epoch so far.
+     * @return The running accuracy, or NaN if accuracy is not a metric of the network.
+     */
+    double getAccuracy();
+
+    /**
+     * Return the number of trainable parameters of the network.
+     * @return The number of parameters.
+     */
+    long getParameterCount();
+
+    /**
+     * Return the bytes held by the results of the layers of the network for the current batch size.
+     * @return The activation memory in bytes.
+     */
+    long getActivationBytes();
+
+    /**
+     * Forget the batch latencies recorded so far, so the percentiles only cover batches from now on.
+     */
+    void resetLatencies();
+}
@@ -0,0 +1,21 @@
+package Sequential.NetOps;
+
+// Layout of the binary network format. All values are little endian.
+//      magic "CNNB", int version, int metadata length
+//      metadata: the lines of the text format without any parameters, in UTF-8
+//      for each trainable layer, starting on an 8 byte boundary:
+//          int precision (0 for double, 1 for float), int rows, int cols, int 0
+//          rows * cols parameters in row major order
+class BinaryFormat {
+    static final byte[] MAGIC = {'C', 'N', 'N', 'B'};
+    static final int VERSION = 1;
+    static final int ALIGNMENT = 8;
+    static final int DOUBLE_BLOCK = 0;
+    static final int FLOAT_BLOCK = 1;
+    static final int BLOCK_HEADER_SIZE = 16;
+
+    // Return the smallest position at or after the given one that is aligned for a block
+    static long align(long position){
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
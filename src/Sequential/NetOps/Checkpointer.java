@@ -0,0 +1,294 @@
+package Sequential.NetOps;
+
+import Sequential.Optimizers.ParameterStore;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidNetworkFormatException;
+import Sequential.Util.BatchIterator;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Periodically checkpoints a network while it trains so that an interrupted run can resume where it
+ * left off. A checkpoint holds the parameters of the network, the state its optimizer keeps for them
+ * (such as the moments of adam), and the position of the batch iterator, including its shuffled order.
+ * When a checkpoint is due, the state is copied into a reusable snapshot between batches and written to
+ * disk on a background thread while training continues. Checkpoints replace the previous file
+ * atomically, so an interruption during a write leaves the last complete checkpoint in place.
+ * Checkpoints do not hold the architecture of the network; it is rebuilt by the program resuming.
+ */
+public class Checkpointer implements AutoCloseable {
+    private static final int MAGIC = 0x434E4E4B;
+    private static final int VERSION = 1;
+
+    private File file;
+    private int batchInterval;
+    private long nanoInterval;
+    private ExecutorService writer;
+    private Future<?> pending;
+    private Snapshot snapshot = new Snapshot();
+    private int batchesSinceCheckpoint;
+    private long lastCheckpoint = System.nanoTime();
+
+    /**
+     * Constructs a new Checkpointer.
+     * @param path Path to the checkpoint file. A file already there is resumed from.
+     * @param batchInterval Number of batches between checkpoints, or 0 to not checkpoint by batch.
+     * @param secondInterval Number of seconds between checkpoints, or 0 to not checkpoint by time.
+     */
+    public Checkpointer(String path, int batchInterval, double secondInterval){
+        this.file = new File(path);
+        this.batchInterval = batchInterval;
+        this.nanoInterval = (long) (secondInterval * 1e9);
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r){
+                // Don't keep the program alive if the checkpointer is never closed
+                Thread t = new Thread(r, "Checkpointer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Constructs a new Checkpointer that checkpoints every given number of batches.
+     * @param path Path to the checkpoint file. A file already there is resumed from.
+     * @param batchInterval Number of batches between checkpoints.
+     */
+    public Checkpointer(String path, int batchInterval){
+        this(path, batchInterval, 0);
+    }
+
+    // Return true if there is a checkpoint to resume from
+    public boolean exists(){
+        return file.isFile();
+    }
+
+    // Load the checkpoint, if there is one, into the network, its optimizer, and the batches. Return the
+    // epoch training should resume at. The optimizer must already be constructed for the network
+    public int resume(Sequential net, BatchIterator batches)
+            throws IOException, InvalidNetworkFormatException, InvalidDimensionException{
+        batchesSinceCheckpoint = 0;
+        lastCheckpoint = System.nanoTime();
+        if (!exists()){
+            return 0;
+        }
+        ParameterStore store = net.getOptimizer().getParameterStore();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if (in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new InvalidNetworkFormatException("Checkpoint: Not a checkpoint file");
+            }
+            int epoch = in.readInt();
+            int cursor = in.readInt();
+            int[] order = new int[in.readInt()];
+            for (int i = 0; i < order.length; i++){
+                order[i] = in.readInt();
+            }
+            byte[] shuffleState = new byte[in.readInt()];
+            in.readFully(shuffleState);
+
+            if (in.readInt() != store.numBuffers()){
+                throw new InvalidNetworkFormatException("Checkpoint: Does not match the layers of the network");
+            }
+            for (int i = 0; i < store.numBuffers(); i++){
+                readTensor(in, store.getParams(i));
+            }
+            if (in.readInt() != store.numStates()){
+                throw new InvalidNetworkFormatException("Checkpoint: Does not match the optimizer of the network");
+            }
+            for (int i = 0; i < store.numStates(); i++){
+                if (in.readBoolean()){
+                    readTensor(in, store.getState(i));
+                }
+            }
+            batches.setPrecision(net.getPrecision());
+            batches.restore(order, cursor, shuffleState);
+            System.out.println("Resuming from checkpoint at epoch " + (epoch + 1));
+            return epoch;
+        }
+    }
+
+    // Called by the optimizer after each batch of the given epoch. Checkpoints if one is due and the
+    // last checkpoint has finished writing. A failed write does not stop training, the next one may succeed
+    public void batchFinished(Sequential net, BatchIterator batches, int epoch){
+        batchesSinceCheckpoint++;
+        boolean due = (batchInterval > 0 && batchesSinceCheckpoint >= batchInterval)
+                || (nanoInterval > 0 && System.nanoTime() - lastCheckpoint >= nanoInterval);
+        if (due && (pending == null || pending.isDone())){
+            try {
+                await();
+            } catch (IOException e){
+                System.out.println("Checkpoint failed: " + e.getMessage());
+            }
+            checkpoint(net, batches, epoch);
+        }
+    }
+
+    // Checkpoint now and wait for the checkpoint to be written
+    public void save(Sequential net, BatchIterator batches, int epoch) throws IOException{
+        await();
+        checkpoint(net, batches, epoch);
+        await();
+    }
+
+    // Wait for the last checkpoint to be written and stop the writer thread
+    @Override
+    public void close() throws IOException{
+        try {
+            await();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    // Copy the training state into the snapshot and write it in the background
+    private void checkpoint(Sequential net, BatchIterator batches, int epoch){
+        ParameterStore store = net.getOptimizer().getParameterStore();
+        // An epoch whose last batch is done resumes at the start of the next one
+        snapshot.epoch = batches.hasNext() ? epoch : epoch + 1;
+        snapshot.cursor = batches.getCursor();
+        if (snapshot.order == null || snapshot.order.length != batches.size()){
+            snapshot.order = new int[batches.size()];
+        }
+        batches.copyOrder(snapshot.order);
+        snapshot.shuffleState = batches.getShuffleState();
+        if (snapshot.params == null || snapshot.params.length != store.numBuffers()){
+            snapshot.params = new Tensor[store.numBuffers()];
+        }
+        for (int i = 0; i < store.numBuffers(); i++){
+            snapshot.params[i] = copyInto(store.getParams(i), snapshot.params[i]);
+        }
+        if (snapshot.states == null || snapshot.states.length != store.numStates()){
+            snapshot.states = new Tensor[store.numStates()];
+        }
+        for (int i = 0; i < store.numStates(); i++){
+            snapshot.states[i] = store.hasState(i) ? copyInto(store.getState(i), snapshot.states[i]) : null;
+        }
+        batchesSinceCheckpoint = 0;
+        lastCheckpoint = System.nanoTime();
+        pending = writer.submit(new Runnable() {
+            @Override
+            public void run(){
+                try {
+                    write();
+                } catch (IOException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    // Wait for the checkpoint being written, rethrowing any failure
+    private void await() throws IOException{
+        if (pending == null){
+            return;
+        }
+        try {
+            pending.get();
+        } catch (ExecutionException e){
+            if (e.getCause().getCause() instanceof IOException){
+                throw (IOException) e.getCause().getCause();
+            }
+            throw new IOException("Checkpoint: Failed to write checkpoint", e.getCause());
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Checkpoint: Interrupted while waiting for a checkpoint", e);
+        } finally {
+            pending = null;
+        }
+    }
+
+    // Write the snapshot to a temporary file, then move it over the last checkpoint
+    private void write() throws IOException{
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.epoch);
+            out.writeInt(snapshot.cursor);
+            out.writeInt(snapshot.order.length);
+            for (int i = 0; i < snapshot.order.length; i++){
+                out.writeInt(snapshot.order[i]);
+            }
+            out.writeInt(snapshot.shuffleState.length);
+            out.write(snapshot.shuffleState);
+            out.writeInt(snapshot.params.length);
+            for (int i = 0; i < snapshot.params.length; i++){
+                writeTensor(out, snapshot.params[i]);
+            }
+            out.writeInt(snapshot.states.length);
+            for (int i = 0; i < snapshot.states.length; i++){
+                out.writeBoolean(snapshot.states[i] != null);
+                if (snapshot.states[i] != null){
+                    writeTensor(out, snapshot.states[i]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Copy a compact tensor into the given snapshot buffer, allocating a new one if it does not fit
+    private static Tensor copyInto(Tensor src, Tensor dst){
+        if (dst == null || dst.getPrecision() != src.getPrecision() || !dst.sameShape(src)){
+            return src.copy();
+        }
+        if (src.getPrecision() == Precision.DOUBLE){
+            System.arraycopy(src.getData(), src.getOffset(), dst.getData(), 0, src.size());
+        } else {
+            System.arraycopy(src.getFloatData(), src.getOffset(), dst.getFloatData(), 0, src.size());
+        }
+        return dst;
+    }
+
+    // Write the values of a compact tensor in its own precision
+    private static void writeTensor(DataOutputStream out, Tensor t) throws IOException{
+        boolean isDouble = t.getPrecision() == Precision.DOUBLE;
+        out.writeBoolean(isDouble);
+        out.writeInt(t.size());
+        for (int i = 0; i < t.size(); i++){
+            if (isDouble){
+                out.writeDouble(t.getFlat(t.getOffset() + i));
+            } else {
+                out.writeFloat((float) t.getFlat(t.getOffset() + i));
+            }
+        }
+    }
+
+    // Read values into a compact tensor, converting them to its precision
+    private static void readTensor(DataInputStream in, Tensor t) throws IOException, InvalidNetworkFormatException{
+        boolean isDouble = in.readBoolean();
+        if (in.readInt() != t.size()){
+            throw new InvalidNetworkFormatException("Checkpoint: Does not match the size of the network's parameters");
+        }
+        for (int i = 0; i < t.size(); i++){
+            t.setFlat(t.getOffset() + i, isDouble ? in.readDouble() : in.readFloat());
+        }
+    }
+
+    // Training state copied out of the network when a checkpoint is taken
+    private static class Snapshot {
+        int epoch;
+        int cursor;
+        int[] order;
+        byte[] shuffleState;
+        Tensor[] params;
+        Tensor[] states;
+    }
+}
@@ -5,10 +5,21 @@ package Sequential.NetOps;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Scanner;
 
 import Sequential.Layers.TrainableLayer.Trainable;
 import Sequential.LossFunctions.LossFunction;
+import Sequential.Monitoring.NetworkIOEvent;
 import Sequential.Optimizers.Adam;
 import Sequential.Optimizers.MiniBatch;
 import Sequential.Optimizers.Optimizer;
@@ -22,6 +33,10 @@ public class NetworkLoader {
     int[] poolDim = null;
     int[] strideLength = null;
 
+    // Mapped parameter blocks of a binary network. Null when loading the text format
+    ByteBuffer weightBlocks = null;
+    Precision blockPrecision = Precision.DOUBLE;
+
     // Save the network (weights and all) to a file with the given path
     // The file will have the following format:
     //      Inshape: x1 x2 x3
@@ -31,6 +46,8 @@ public class NetworkLoader {
     public Sequential loadNetwork(String path)
             throws FileNotFoundException, InvalidOperationException,
                 InvalidDimensionException, InvalidNetworkFormatException {
+        NetworkIOEvent event = new NetworkIOEvent();
+        event.begin();
         File fin = new File(path);
         Scanner scIn = new Scanner(fin);
         Sequential ret = new Sequential();
@@ -57,6 +74,65 @@ public class NetworkLoader {
         catch (InvalidNetworkFormatException i){
             i.printStackTrace();
         }
+        event.end();
+        if (event.shouldCommit()){
+            event.describe("load", "text", path, ret);
+            event.commit();
+        }
+        return ret;
+    }
+
+    // Load a network saved with NetworkWriter.writeNetworkBinary. The file is memory mapped and each
+    // layer's parameters are copied out of the mapping with a single bulk read instead of being parsed
+    public Sequential loadNetworkBinary(String path)
+            throws IOException, InvalidOperationException,
+                InvalidDimensionException, InvalidNetworkFormatException {
+        NetworkIOEvent event = new NetworkIOEvent();
+        event.begin();
+        ByteBuffer map;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        byte[] magic = new byte[BinaryFormat.MAGIC.length];
+        if (map.remaining() < magic.length + 8){
+            throw new InvalidNetworkFormatException("File is too short to be a binary network");
+        }
+        map.get(magic);
+        if (!Arrays.equals(magic, BinaryFormat.MAGIC)){
+            throw new InvalidNetworkFormatException("File is not a binary network");
+        }
+        if (map.getInt() != BinaryFormat.VERSION){
+            throw new InvalidNetworkFormatException("Unsupported binary network version");
+        }
+        int metaLength = map.getInt();
+        if (metaLength < 0 || metaLength > map.remaining()){
+            throw new InvalidNetworkFormatException("Invalid metadata length");
+        }
+        byte[] meta = new byte[metaLength];
+        map.get(meta);
+
+        Scanner scIn = new Scanner(new String(meta, StandardCharsets.UTF_8));
+        Sequential ret = new Sequential();
+        int curLayer = 0;
+        weightBlocks = map;
+        blockPrecision = Precision.DOUBLE;
+        try {
+            int[] inShape = getInShape(scIn);
+            System.out.println("Loading layers.");
+            while (addLayer(scIn, ret, inShape)) {
+                curLayer++;
+                System.out.println("Successfully loaded layer: " + curLayer);
+                inShape = null;
+            }
+            System.out.println("Loading complete");
+        } finally {
+            weightBlocks = null;
+        }
+        event.end();
+        if (event.shouldCommit()){
+            event.describe("load", "binary", path, ret);
+            event.commit();
+        }
         return ret;
     }
 
@@ -107,10 +183,49 @@ public class NetworkLoader {
             throw new InvalidNetworkFormatException("Convolutional layer must include num filters and filter size");
         }
         net.addConv(numNodes, poolDim, inSize, strideLength, null);
-        ((Trainable)net.getLastLayer()).fillParams(scIn);
+        fillParams((Trainable)net.getLastLayer(), scIn);
         return true;
     }
 
+    // Fill the parameters of a newly added layer from the scanner, or from the next block of a binary network
+    private void fillParams(Trainable layer, Scanner scIn) throws InvalidNetworkFormatException{
+        if (weightBlocks == null){
+            layer.fillParams(scIn);
+            return;
+        }
+        Tensor params = layer.getParams();
+        int start = (int) BinaryFormat.align(weightBlocks.position());
+        if (start + BinaryFormat.BLOCK_HEADER_SIZE > weightBlocks.limit()){
+            throw new InvalidNetworkFormatException("Missing parameter block");
+        }
+        weightBlocks.position(start);
+        int precision = weightBlocks.getInt();
+        int rows = weightBlocks.getInt();
+        int cols = weightBlocks.getInt();
+        weightBlocks.getInt();
+        if (rows != params.getDim(0) || cols != params.getDim(1)){
+            throw new InvalidNetworkFormatException("Parameter block does not match the shape of its layer");
+        }
+        double[] data = params.getData();
+        int elementSize = precision == BinaryFormat.DOUBLE_BLOCK ? 8 : 4;
+        if ((precision != BinaryFormat.DOUBLE_BLOCK && precision != BinaryFormat.FLOAT_BLOCK)
+                || (long) data.length * elementSize > weightBlocks.remaining()){
+            throw new InvalidNetworkFormatException("Invalid parameter block");
+        }
+        if (precision == BinaryFormat.DOUBLE_BLOCK){
+            DoubleBuffer values = weightBlocks.asDoubleBuffer();
+            values.get(data);
+        } else {
+            // Widen now and narrow again when the network is compiled
+            FloatBuffer values = weightBlocks.asFloatBuffer();
+            for (int i = 0; i < data.length; i++){
+                data[i] = values.get(i);
+            }
+            blockPrecision = Precision.FLOAT;
+        }
+        weightBlocks.position(weightBlocks.position() + data.length * elementSize);
+    }
+
     // Add a max pooling layer to the network given the line of metadata and a scanner
     private boolean addMaxPoolLayer(String[] metaLine, Scanner scIn, Sequential net, int[] inSize)
             throws InvalidDimensionException, InvalidOperationException, InvalidNetworkFormatException{
@@ -133,7 +248,7 @@ public class NetworkLoader {
             throw new InvalidNetworkFormatException("Dense layer must include num nodes");
         }
         net.addDense(numNodes, inSize, null);
-        ((Trainable)net.getLastLayer()).fillParams(scIn);
+        fillParams((Trainable)net.getLastLayer(), scIn);
         return true;
     }
 
@@ -205,7 +320,11 @@ public class NetworkLoader {
         }
         String[] compileMetrics = new String[metrics.length - 1];
         System.arraycopy(metrics, 1, compileMetrics, 0, metrics.length - 1);
-        net.compile(lossFunc, opt, compileMetrics);
+        if (weightBlocks != null && blockPrecision == Precision.FLOAT){
+            net.compile(lossFunc, opt, compileMetrics, Precision.FLOAT);
+        } else {
+            net.compile(lossFunc, opt, compileMetrics);
+        }
     }
 
     // given a line representing the serialization of an optimizer, return the optimizer
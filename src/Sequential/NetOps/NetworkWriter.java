@@ -4,11 +4,23 @@
 package Sequential.NetOps;
 
 import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Monitoring.NetworkIOEvent;
 import Sequential.Sequential;
+import Sequential.Util.Precision;
+import Sequential.Util.Tensor;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 public class NetworkWriter {
@@ -21,17 +33,67 @@ public class NetworkWriter {
 
     public void writeNetwork(String path)
             throws IOException {
+        NetworkIOEvent event = new NetworkIOEvent();
+        event.begin();
         File outFile = new File(path);
         FileWriter fWrite = new FileWriter(outFile);
         writeInShape(fWrite);
         ArrayList<Layer> layers = net.getLayers();
-        String[] metrics = net.getMetrics();
-        StringBuilder metricsOut = new StringBuilder();
         // Write Layers
         for (int i = 0; i < layers.size(); i++){
             System.out.println("Writing layer: " + (i + 1) + "/" + layers.size());
             layers.get(i).writeLayer(fWrite);
         }
+        writeCompileInfo(fWrite);
+        fWrite.close();
+        event.end();
+        if (event.shouldCommit()){
+            event.describe("save", "text", path, net);
+            event.commit();
+        }
+        System.out.println("Writing complete.");
+    }
+
+    // Save the network to a file with the given path in the binary format. The metadata of the text
+    // format is written as a header, followed by the parameters of each trainable layer as a block
+    // of little endian values. See BinaryFormat
+    public void writeNetworkBinary(String path) throws IOException {
+        NetworkIOEvent event = new NetworkIOEvent();
+        event.begin();
+        ArrayList<Layer> layers = net.getLayers();
+        StringWriter meta = new StringWriter();
+        writeInShape(meta);
+        for (int i = 0; i < layers.size(); i++){
+            meta.write(layers.get(i).getMetaLine() + "\n");
+        }
+        writeCompileInfo(meta);
+        byte[] metaBytes = meta.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (BlockWriter out = new BlockWriter(FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))){
+            out.putBytes(BinaryFormat.MAGIC);
+            out.putInt(BinaryFormat.VERSION);
+            out.putInt(metaBytes.length);
+            out.putBytes(metaBytes);
+            for (int i = 0; i < layers.size(); i++){
+                if (layers.get(i) instanceof Trainable){
+                    System.out.println("Writing layer: " + (i + 1) + "/" + layers.size());
+                    out.putBlock(((Trainable) layers.get(i)).getParams());
+                }
+            }
+        }
+        event.end();
+        if (event.shouldCommit()){
+            event.describe("save", "binary", path, net);
+            event.commit();
+        }
+        System.out.println("Writing complete.");
+    }
+
+    // Write the loss function, optimizer, and metrics of the network
+    private void writeCompileInfo(Writer fWrite) throws IOException{
+        String[] metrics = net.getMetrics();
+        StringBuilder metricsOut = new StringBuilder();
         // Write Loss
         net.getLossFunc().writeFunc(fWrite);
         // Write Optimizer
@@ -44,14 +106,91 @@ public class NetworkWriter {
         }
         metricsOut.append("\n");
         fWrite.write(metricsOut.toString());
-        fWrite.close();
-        System.out.println("Writing complete.");
     }
 
     // Write the input dimensions to the network to a file
-    private void writeInShape(FileWriter fWrite) throws IOException{
+    private void writeInShape(Writer fWrite) throws IOException{
         int[] inDim = net.getInDim();
         String outStr = "Inshape: " + inDim[0] + " " + inDim[1] + " " + inDim[2] + "\n";
         fWrite.write(outStr);
     }
+
+    // Writes values to a channel through a fixed size buffer so that large layers are never copied whole
+    private static class BlockWriter implements AutoCloseable {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0;
+
+        BlockWriter(FileChannel channel){
+            this.channel = channel;
+        }
+
+        void putInt(int val) throws IOException{
+            ensureRemaining(4);
+            buffer.putInt(val);
+            position += 4;
+        }
+
+        void putBytes(byte[] vals) throws IOException{
+            int loc = 0;
+            while (loc < vals.length){
+                ensureRemaining(1);
+                int n = Math.min(vals.length - loc, buffer.remaining());
+                buffer.put(vals, loc, n);
+                loc += n;
+                position += n;
+            }
+        }
+
+        // Write the parameters of a layer as an aligned block
+        void putBlock(Tensor params) throws IOException{
+            params = params.contiguous();
+            while (position != BinaryFormat.align(position)){
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+            boolean isDouble = params.getPrecision() == Precision.DOUBLE;
+            putInt(isDouble ? BinaryFormat.DOUBLE_BLOCK : BinaryFormat.FLOAT_BLOCK);
+            putInt(params.getDim(0));
+            putInt(params.getDim(1));
+            putInt(0);
+            int elementSize = isDouble ? 8 : 4;
+            int loc = params.getOffset();
+            int end = loc + params.size();
+            while (loc < end){
+                ensureRemaining(elementSize);
+                int n = Math.min(end - loc, buffer.remaining() / elementSize);
+                if (isDouble){
+                    buffer.asDoubleBuffer().put(params.getData(), loc, n);
+                } else {
+                    buffer.asFloatBuffer().put(params.getFloatData(), loc, n);
+                }
+                buffer.position(buffer.position() + n * elementSize);
+                loc += n;
+                position += (long) n * elementSize;
+            }
+        }
+
+        // Flush the buffer if it cannot hold the given number of bytes
+        private void ensureRemaining(int numBytes) throws IOException{
+            if (buffer.remaining() < numBytes){
+                flush();
+            }
+        }
+
+        private void flush() throws IOException{
+            buffer.flip();
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException{
+            flush();
+            channel.close();
+        }
+    }
 }
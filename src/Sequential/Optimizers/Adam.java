@@ -3,17 +3,18 @@
 
 package Sequential.Optimizers;
 
-import Sequential.Layers.Layer;
-import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Monitoring.OptimizerStepEvent;
+import Sequential.NetOps.Checkpointer;
 import Sequential.Sequential;
 import Sequential.SequentialExceptions.InvalidDimensionException;
 import Sequential.SequentialExceptions.InvalidOperationException;
-import Sequential.Util.NetUtil;
-import Sequential.Util.PrettyOutput;
+import Sequential.Util.BatchIterator;
+import Sequential.Util.Precision;
+import Sequential.Util.Profiler;
+import Sequential.Util.Tensor;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
  * Class representing an optimizer that implements the Adam optimization algorithm.
@@ -24,6 +25,10 @@ public class Adam implements Optimizer{
     private double beta2;
     private double epsilon;
     private Sequential net;
+    private ParameterStore store;
+    private int numThreads = 1;
+    // Floating point operations of one step of a parameter, as estimated for the profiler
+    private static final int FLOPS_PER_PARAM = 12;
 
     /**
      * Constructs a new Adam Optimizer.
@@ -87,65 +92,105 @@ public class Adam implements Optimizer{
 
     // Provide more construction parameters for this optimizer
     public void constructOptimizer(Sequential net){
+        // Keep the moments of a network that is trained over multiple calls to fit
+        if (this.net != net){
+            store = new ParameterStore(net, 2);
+        } else if (!store.matches(net)){
+            // Layers were added since the last fit, so register them too
+            store = new ParameterStore(net, store);
+        }
         this.net = net;
     }
 
-    // Train this network
-    public void trainNetwork(double[][][][] in, double[][] out, int batchSize, int epochs)
+    // Return the parameters of the network along with their first (state 0) and second (state 1) moments
+    public ParameterStore getParameterStore(){
+        return store;
+    }
+
+    // Set the number of threads each batch is split across
+    public void setNumThreads(int numThreads) throws InvalidOperationException{
+        if (numThreads < 1){
+            throw new InvalidOperationException("Adam: Must train with at least one thread");
+        }
+        this.numThreads = numThreads;
+    }
+
+    // Train this network, continuing from a checkpoint if the start epoch or batches say so
+    public void trainNetwork(BatchIterator batches, int startEpoch, int epochs, Checkpointer checkpoints)
             throws InvalidOperationException, InvalidDimensionException {
-        double curBeta1;
-        double curBeta2;
-        double[][][][][] x =
-                NetUtil.four2FiveD(in, in.length / batchSize, batchSize, in[0].length, in[0][0].length, in[0][0][0].length);
-        double[][][] y =
-                NetUtil.two2ThreeD(out, out.length / batchSize, batchSize, out[0].length);
-
-        ArrayList<Layer> layers = net.getLayers();
-        PrettyOutput pOutput = new PrettyOutput(x.length, epochs, 30, net.getLastLayer(), net.getMetrics(),
-                net.getLossFunc());
-        double[][] curGradients;
-        double[][][] flatIn = toFlatBatches(x);
-
-        // Train over the given number of epochs
-        for (int curEpoch = 0; curEpoch < epochs; curEpoch++) {
-            pOutput.newEpoch(curEpoch);
-            curBeta1 = Math.pow(beta1, curEpoch + 1);
-            curBeta2 = Math.pow(beta2, curEpoch + 1);
-            // Train over each batch
-            for (int i = 0; i < x.length; i++) {
-                net.forwardBatchPass(flatIn[i]);
-                curGradients = net.getLossJacobian(y[i]);
-                pOutput.logProgress(y[i]);
-                for (int j = layers.size() - 1; j >= 0; j--) {
-                    if (j > 0) {
-                        curGradients = layers.get(j).computeGradients(curGradients, layers.get(j - 1).getLayerResult());
-                    } else {
-                        curGradients = layers.get(j).computeGradients(curGradients, flatIn[i]);
-                    }
-                    if (layers.get(j) instanceof Trainable){
-                        ((Trainable) layers.get(j)).updateParamsAdam(alpha, curBeta1, curBeta2, epsilon);
-                    }
-                }
-            }
-            pOutput.finishEpoch();
+        TrainingLoop.train(this, net, numThreads, batches, startEpoch, epochs, checkpoints);
+    }
+
+    // Make one adam step from the gradients held by the layers of the network
+    public void applyGradients(int epoch) throws InvalidOperationException, InvalidDimensionException{
+        if (store == null){
+            throw new InvalidOperationException("Adam: Must be given a network before updating its parameters");
         }
+        updateParams(Math.pow(beta1, epoch + 1), Math.pow(beta2, epoch + 1));
     }
 
-    // Takes the five dimensional array used for training and create a three dimensional array with the first dimension
-    // being each batch, the next being the inputs in the batch, and the next being the actual values
-    private double[][][] toFlatBatches(double[][][][][] in){
-        double[][][] flatIn = new double[in.length][in[0].length][in[0][0].length * in[0][0][0].length * in[0][0][0][0].length];
-        // Flatten each input
-        for (int i = 0; i < flatIn.length; i++){
-            for (int j = 0; j < flatIn[0].length; j++){
-                flatIn[i][j] = NetUtil.three2OneD(in[i][j]);
+    // Make one adam step over every parameter of the network, updating the moments in place
+    private void updateParams(double b1, double b2) throws InvalidDimensionException {
+        Tensor firstMoments = store.getState(0);
+        Tensor secondMoments = store.getState(1);
+        double adjA = alpha * Math.sqrt(1 - b2) / (1 - b1);
+        OptimizerStepEvent event = new OptimizerStepEvent();
+        event.begin();
+        Profiler profiler = net.getProfiler();
+        for (int i = 0; i < store.numBuffers(); i++) {
+            if (profiler != null) {
+                profiler.begin();
+            }
+            Tensor params = store.getParams(i);
+            Tensor grads = store.getGradients(i);
+            if (!params.isCompact() || !grads.isCompact() || !params.sameShape(grads)) {
+                throw new InvalidDimensionException("Adam: Parameters and gradients must be compact and of the same dimensions");
             }
+            if (params.getPrecision() == Precision.DOUBLE) {
+                step(params.getData(), grads.getData(), firstMoments.getData(), secondMoments.getData(),
+                        store.getOffset(i), params.size(), adjA, b1, b2);
+            } else {
+                step(params.getFloatData(), grads.getFloatData(), firstMoments.getFloatData(),
+                        secondMoments.getFloatData(), store.getOffset(i), params.size(), adjA, b1, b2);
+            }
+            if (profiler != null) {
+                profiler.endUpdate(store.getLayer(i), FLOPS_PER_PARAM);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.optimizer = "Adam";
+            event.parameters = store.numParams();
+            event.buffers = store.numBuffers();
+            event.commit();
+        }
+    }
+
+    // Adam step over n double precision parameters whose moments start at the given offset
+    private void step(double[] w, double[] g, double[] m, double[] v, int offset, int n,
+                      double adjA, double b1, double b2) {
+        for (int i = 0; i < n; i++) {
+            int s = offset + i;
+            m[s] = b1 * m[s] + (1 - b1) * g[i];
+            v[s] = b2 * v[s] + (1 - b2) * (g[i] * g[i]);
+            w[i] += -1 * adjA * m[s] / Math.sqrt(v[s] + epsilon);
+        }
+    }
+
+    // Adam step over n single precision parameters whose moments start at the given offset
+    private void step(float[] w, float[] g, float[] m, float[] v, int offset, int n,
+                      double adjA, double b1, double b2) {
+        for (int i = 0; i < n; i++) {
+            int s = offset + i;
+            double grad = g[i];
+            m[s] = (float) (b1 * m[s] + (1 - b1) * grad);
+            v[s] = (float) (b2 * v[s] + (1 - b2) * (grad * grad));
+            w[i] += (float) (-1 * adjA * m[s] / Math.sqrt(v[s] + epsilon));
         }
-        return flatIn;
     }
 
     // Write information about this optimizer in the serialization format
-    public void writeOpt(FileWriter fWrite) throws IOException{
+    public void writeOpt(Writer fWrite) throws IOException{
         StringBuilder sb = new StringBuilder("adam ");
         sb.append(alpha);
         sb.append(" ");
@@ -0,0 +1,125 @@
+package Sequential.Optimizers;
+
+import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.Util.BatchMetrics;
+import Sequential.Util.NetUtil;
+import Sequential.Util.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Splits each batch into shards that are passed forward and backward through replicas of the
+// network on separate threads. The replicas share the weights of the network, and the gradients
+// of every shard are summed into the trainable layers of the network so that the optimizer can
+// make a single update per batch.
+class DataParallel {
+    private Sequential net;
+    // replicas[0] is the network itself
+    private Sequential[] replicas;
+    private ExecutorService pool;
+    // Loss and accuracy of each replica's shard of the last batch
+    private BatchMetrics[] shardMetrics;
+
+    DataParallel(Sequential net, int numThreads) throws InvalidDimensionException{
+        this.net = net;
+        replicas = new Sequential[numThreads];
+        replicas[0] = net;
+        shardMetrics = new BatchMetrics[numThreads];
+        for (int i = 0; i < numThreads; i++){
+            shardMetrics[i] = new BatchMetrics();
+        }
+        for (int i = 1; i < numThreads; i++){
+            replicas[i] = net.replicate();
+        }
+        pool = Executors.newFixedThreadPool(numThreads);
+    }
+
+    // Compute the gradients of the loss for the given batch, leaving them in the trainable layers of
+    // the network, and add the loss and accuracy of every shard to the given metrics
+    void computeGradients(Tensor xBatch, Tensor yBatch, BatchMetrics metrics) throws InvalidDimensionException{
+        int batchSize = xBatch.getDim(0);
+        int numShards = Math.min(replicas.length, batchSize);
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(numShards);
+        for (int i = 0; i < numShards; i++){
+            int start = i * batchSize / numShards;
+            int end = (i + 1) * batchSize / numShards;
+            Sequential replica = replicas[i];
+            Tensor xShard = xBatch.slice(start, end);
+            Tensor yShard = yBatch.slice(start, end);
+            BatchMetrics shardMetric = shardMetrics[i];
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InvalidDimensionException{
+                    backprop(replica, xShard, yShard, batchSize, shardMetric);
+                    return null;
+                }
+            }));
+        }
+        waitFor(futures);
+        for (int i = 0; i < numShards; i++){
+            metrics.add(shardMetrics[i]);
+        }
+
+        // Sum the gradients of each shard into the layers of the network
+        ArrayList<Layer> layers = net.getLayers();
+        for (int i = 1; i < numShards; i++){
+            ArrayList<Layer> replicaLayers = replicas[i].getLayers();
+            for (int j = 0; j < layers.size(); j++){
+                if (layers.get(j) instanceof Trainable){
+                    NetUtil.elAddInc(((Trainable) layers.get(j)).getGradients(),
+                            ((Trainable) replicaLayers.get(j)).getGradients());
+                }
+            }
+        }
+    }
+
+    // Stop the threads used for training
+    void shutdown(){
+        pool.shutdown();
+    }
+
+    // Pass a shard forward and backward through a replica, filling the metrics with the loss and accuracy
+    // of the shard. The loss is scaled by the size of the whole batch so that the gradients of the shards
+    // sum to the gradient of the batch
+    private static void backprop(Sequential replica, Tensor xShard, Tensor yShard, int batchSize,
+                                 BatchMetrics metrics) throws InvalidDimensionException{
+        replica.forwardBatchPass(xShard);
+        metrics.clear();
+        replica.backwardBatchPass(replica.getLossJacobian(yShard, batchSize, metrics), xShard);
+    }
+
+    // Wait for every shard to finish, rethrowing the first failure
+    private static void waitFor(List<Future<Void>> futures) throws InvalidDimensionException{
+        InvalidDimensionException failure = null;
+        for (int i = 0; i < futures.size(); i++){
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e){
+                if (failure == null){
+                    if (e.getCause() instanceof InvalidDimensionException){
+                        failure = (InvalidDimensionException) e.getCause();
+                    } else if (e.getCause() instanceof RuntimeException){
+                        throw (RuntimeException) e.getCause();
+                    } else {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("DataParallel: Interrupted while waiting for a shard", e);
+            }
+        }
+        if (failure != null){
+            throw failure;
+        }
+    }
+}
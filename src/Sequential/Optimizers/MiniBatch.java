@@ -4,20 +4,23 @@
 package Sequential.Optimizers;
 
 
-import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Monitoring.OptimizerStepEvent;
+import Sequential.NetOps.Checkpointer;
 import Sequential.Sequential;
 import Sequential.Util.*;
-import Sequential.Layers.Layer;
 import Sequential.SequentialExceptions.InvalidDimensionException;
 import Sequential.SequentialExceptions.InvalidOperationException;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class MiniBatch implements Optimizer{
     private double learnRate;
     private Sequential net;
+    private ParameterStore store;
+    private int numThreads = 1;
+    // Floating point operations of one step of a parameter, as estimated for the profiler
+    private static final int FLOPS_PER_PARAM = 2;
 
     public MiniBatch() {this.learnRate = 0.01;}
     public MiniBatch(double learnRate){
@@ -26,63 +29,84 @@ public class MiniBatch implements Optimizer{
 
     // Provide more construction parameters for this optimizer
     public void constructOptimizer(Sequential net){
+        if (this.net != net){
+            store = new ParameterStore(net, 0);
+        } else if (!store.matches(net)){
+            // Layers were added since the last fit, so register them too
+            store = new ParameterStore(net, store);
+        }
         this.net = net;
     }
 
-    // Train this network
-    public void trainNetwork(double[][][][] in, double[][] out, int batchSize, int epochs)
-            throws InvalidOperationException, InvalidDimensionException {
+    // Return the parameters of the network. Mini batch keeps no state for them
+    public ParameterStore getParameterStore(){
+        return store;
+    }
 
-        double[][][][][] x =
-                NetUtil.four2FiveD(in, in.length / batchSize, batchSize, in[0].length, in[0][0].length, in[0][0][0].length);
-        double[][][] y =
-                NetUtil.two2ThreeD(out, out.length / batchSize, batchSize, out[0].length);
+    // Set the number of threads each batch is split across
+    public void setNumThreads(int numThreads) throws InvalidOperationException{
+        if (numThreads < 1){
+            throw new InvalidOperationException("MiniBatch: Must train with at least one thread");
+        }
+        this.numThreads = numThreads;
+    }
 
-        ArrayList<Layer> layers = net.getLayers();
-        PrettyOutput pOutput = new PrettyOutput(x.length, epochs, 30, net.getLastLayer(), net.getMetrics(),
-                net.getLossFunc());
-        double[][] curGradients;
-        double[][][] flatIn = toFlatBatches(x);
+    // Train this network, continuing from a checkpoint if the start epoch or batches say so
+    public void trainNetwork(BatchIterator batches, int startEpoch, int epochs, Checkpointer checkpoints)
+            throws InvalidOperationException, InvalidDimensionException {
+        TrainingLoop.train(this, net, numThreads, batches, startEpoch, epochs, checkpoints);
+    }
 
-        // Train over the given number of epochs
-        for (int curEpoch = 0; curEpoch < epochs; curEpoch++) {
-            pOutput.newEpoch(curEpoch);
-            // Train over each batch
-            for (int i = 0; i < x.length; i++){
-                net.forwardBatchPass(flatIn[i]);
-                curGradients = net.getLossJacobian(y[i]);
-                pOutput.logProgress(y[i]);
-                for (int j = layers.size() - 1; j >= 0; j--){
-                    if (j > 0){
-                        curGradients = layers.get(j).computeGradients(curGradients, layers.get(j - 1).getLayerResult());
-                    }
-                    else{
-                        curGradients = layers.get(j).computeGradients(curGradients, flatIn[i]);
-                    }
-                    if (layers.get(j) instanceof Trainable){
-                        ((Trainable) layers.get(j)).updateParamsMiniBatch(learnRate);
-                    }
-                }
-            }
-            pOutput.finishEpoch();
+    // Make one step from the gradients held by the layers of the network
+    public void applyGradients(int epoch) throws InvalidOperationException, InvalidDimensionException{
+        if (store == null){
+            throw new InvalidOperationException("MiniBatch: Must be given a network before updating its parameters");
         }
+        updateParams();
     }
 
-    // Takes the five dimensional array used for training and create a three dimensional array with the first dimension
-    // being each batch, the next being the inputs in the batch, and the next being the actual values
-    private double[][][] toFlatBatches(double[][][][][] in){
-        double[][][] flatIn = new double[in.length][in[0].length][in[0][0].length * in[0][0][0].length * in[0][0][0][0].length];
-        // Flatten each input
-        for (int i = 0; i < flatIn.length; i++){
-            for (int j = 0; j < flatIn[0].length; j++){
-                flatIn[i][j] = NetUtil.three2OneD(in[i][j]);
+    // Move every parameter of the network against its gradient
+    private void updateParams() throws InvalidDimensionException{
+        OptimizerStepEvent event = new OptimizerStepEvent();
+        event.begin();
+        Profiler profiler = net.getProfiler();
+        for (int i = 0; i < store.numBuffers(); i++){
+            if (profiler != null){
+                profiler.begin();
+            }
+            Tensor params = store.getParams(i);
+            Tensor grads = store.getGradients(i);
+            if (!params.isCompact() || !grads.isCompact() || !params.sameShape(grads)){
+                throw new InvalidDimensionException("MiniBatch: Parameters and gradients must be compact and of the same dimensions");
             }
+            if (params.getPrecision() == Precision.DOUBLE){
+                double[] w = params.getData();
+                double[] g = grads.getData();
+                for (int j = 0; j < w.length; j++){
+                    w[j] += -1 * learnRate * g[j];
+                }
+            } else {
+                float[] w = params.getFloatData();
+                float[] g = grads.getFloatData();
+                for (int j = 0; j < w.length; j++){
+                    w[j] += (float) (-1 * learnRate * g[j]);
+                }
+            }
+            if (profiler != null){
+                profiler.endUpdate(store.getLayer(i), FLOPS_PER_PARAM);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()){
+            event.optimizer = "MiniBatch";
+            event.parameters = store.numParams();
+            event.buffers = store.numBuffers();
+            event.commit();
         }
-        return flatIn;
     }
 
     // Output information about this optimizer in the serialization format
-    public void writeOpt(FileWriter fWrite) throws IOException{
+    public void writeOpt(Writer fWrite) throws IOException{
         StringBuilder sb = new StringBuilder("mini ");
         sb.append(learnRate);
         sb.append("\n");
@@ -3,36 +3,75 @@
 
 package Sequential.Optimizers;
 
+import Sequential.NetOps.Checkpointer;
 import Sequential.Sequential;
 import Sequential.SequentialExceptions.InvalidDimensionException;
 import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.BatchIterator;
 
-import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
 
 public interface Optimizer {
     /**
-     * Fit the network to an approximate mapping between the given inputs and outputs.
-     * @param x Array of 3D inputs to the network for training.
-     * @param y Array of 1D expected outputs corresponding to the inputs.
-     * @param batchSize Number of inputs that should be in training batches.
+     * Fit the network to an approximate mapping between the inputs and outputs of the given batches.
+     * @param batches Iterator over the batches of inputs and expected outputs to train on.
      * @param epochs Number of times the inputs should be trained on.
      * @throws InvalidDimensionException
      * @throws InvalidOperationException
      */
-    void trainNetwork(double[][][][] x, double[][] y, int batchSize, int epochs)
+    default void trainNetwork(BatchIterator batches, int epochs)
+            throws InvalidOperationException, InvalidDimensionException{
+        trainNetwork(batches, 0, epochs, null);
+    }
+
+    /**
+     * Fit the network starting at the given epoch, such as when resuming from a checkpoint. Batches that
+     * are positioned partway through an epoch continue from there instead of starting the epoch over.
+     * @param batches Iterator over the batches of inputs and expected outputs to train on.
+     * @param startEpoch The epoch to start training at.
+     * @param epochs Number of times the inputs should be trained on, including the epochs before startEpoch.
+     * @param checkpoints Told after every batch so that it can checkpoint training, or null.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    void trainNetwork(BatchIterator batches, int startEpoch, int epochs, Checkpointer checkpoints)
             throws InvalidOperationException, InvalidDimensionException;
 
+    /**
+     * Update the parameters of the network from the gradients its layers hold after a backward pass, such as
+     * when training with a custom loop or benchmarking the update on its own.
+     * @param epoch The epoch the gradients are from, starting at 0.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    void applyGradients(int epoch) throws InvalidOperationException, InvalidDimensionException;
+
+    /**
+     * Return the parameters of the network this optimizer is fitting, along with the state it keeps for them.
+     * @return The optimizer's parameter store, or null if the optimizer has not been given a network.
+     */
+    ParameterStore getParameterStore();
+
     /**
      * Gives the optimizer access to the network it needs to train.
      * @param net The network the optimizer should be fitting.
      */
     void constructOptimizer(Sequential net);
 
+    /**
+     * Sets the number of threads each training batch is split across. Every thread passes its part of
+     * the batch through a replica of the network that shares its weights, and the gradients of every part
+     * are summed before the weights are updated once per batch.
+     * @param numThreads The number of threads to train with. Defaults to 1.
+     * @throws InvalidOperationException
+     */
+    void setNumThreads(int numThreads) throws InvalidOperationException;
+
     /**
      * Serialize the optimizer.
-     * @param fWrite The FileWriter that should write the serialized form of the optimizer.
+     * @param fWrite The Writer that should write the serialized form of the optimizer.
      * @throws IOException
      */
-    void writeOpt(FileWriter fWrite) throws IOException;
+    void writeOpt(Writer fWrite) throws IOException;
 }
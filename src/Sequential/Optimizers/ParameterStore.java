@@ -0,0 +1,131 @@
+package Sequential.Optimizers;
+
+import Sequential.Layers.Layer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Sequential;
+import Sequential.Util.Tensor;
+
+import java.util.ArrayList;
+
+/**
+ * Registry of the trainable parameters of a network and the state an optimizer keeps for them.
+ * Each kind of state (such as the first moments of adam) is one flat tensor covering every parameter
+ * of the network, where each parameter buffer owns a contiguous range. State is only allocated the
+ * first time an optimizer asks for it, so networks that are never trained carry none.
+ */
+public class ParameterStore {
+    private ArrayList<Trainable> layers;
+    private int[] offsets;
+    private int numParams;
+    private Tensor[] states;
+
+    /**
+     * Registers the trainable layers of the given network.
+     * @param net The network whose parameters should be registered.
+     * @param numStates The number of kinds of state the optimizer keeps per parameter.
+     */
+    public ParameterStore(Sequential net, int numStates){
+        layers = trainableLayers(net);
+        offsets = new int[layers.size()];
+        for (int i = 0; i < layers.size(); i++){
+            offsets[i] = numParams;
+            numParams += layers.get(i).getParams().size();
+        }
+        states = new Tensor[numStates];
+    }
+
+    /**
+     * Registers the trainable layers of the given network, such as after layers were added to it, keeping
+     * the state the given store holds for the layers that are still in the network.
+     * @param net The network whose parameters should be registered.
+     * @param previous The store of an earlier version of the network.
+     */
+    public ParameterStore(Sequential net, ParameterStore previous){
+        this(net, previous.numStates());
+        for (int state = 0; state < states.length; state++){
+            if (!previous.hasState(state)){
+                continue;
+            }
+            Tensor from = previous.getState(state);
+            Tensor to = getState(state);
+            for (int i = 0; i < previous.numBuffers(); i++){
+                int buffer = layers.indexOf(previous.getLayer(i));
+                if (buffer < 0){
+                    continue;
+                }
+                int size = previous.getParams(i).size();
+                for (int j = 0; j < size; j++){
+                    to.setFlat(offsets[buffer] + j, from.getFlat(previous.getOffset(i) + j));
+                }
+            }
+        }
+    }
+
+    // Return the trainable layers of the network in order
+    private static ArrayList<Trainable> trainableLayers(Sequential net){
+        ArrayList<Trainable> ret = new ArrayList<Trainable>();
+        ArrayList<Layer> netLayers = net.getLayers();
+        for (int i = 0; i < netLayers.size(); i++){
+            if (netLayers.get(i) instanceof Trainable){
+                ret.add((Trainable) netLayers.get(i));
+            }
+        }
+        return ret;
+    }
+
+    // Return true if the registered layers are exactly the trainable layers the network has now
+    public boolean matches(Sequential net){
+        return layers.equals(trainableLayers(net));
+    }
+
+    // Return the number of registered parameter buffers
+    public int numBuffers(){
+        return layers.size();
+    }
+
+    // Return the total number of registered parameters
+    public int numParams(){
+        return numParams;
+    }
+
+    // Return the layer that owns the given buffer
+    public Trainable getLayer(int buffer){
+        return layers.get(buffer);
+    }
+
+    public Tensor getParams(int buffer){
+        return layers.get(buffer).getParams();
+    }
+
+    public Tensor getGradients(int buffer){
+        return layers.get(buffer).getGradients();
+    }
+
+    // Return the number of kinds of state kept per parameter
+    public int numStates(){
+        return states.length;
+    }
+
+    // Return the location of the given buffer's range in each state tensor
+    public int getOffset(int buffer){
+        return offsets[buffer];
+    }
+
+    // Return the given kind of state, allocating it as zeros the first time it is needed. The state
+    // always has the same precision as the parameters
+    public Tensor getState(int state){
+        if (numParams == 0){
+            return new Tensor(0);
+        }
+        if (states[state] == null){
+            states[state] = getParams(0).like(numParams);
+        }
+        states[state] = states[state].toPrecision(getParams(0).getPrecision());
+        return states[state];
+    }
+
+    // Return true if the given kind of state has been allocated
+    public boolean hasState(int state){
+        return states[state] != null;
+    }
+}
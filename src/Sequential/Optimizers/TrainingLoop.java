@@ -0,0 +1,95 @@
+package Sequential.Optimizers;
+
+import Sequential.Monitoring.TrainingBatchEvent;
+import Sequential.Monitoring.TrainingMonitor;
+import Sequential.NetOps.Checkpointer;
+import Sequential.Sequential;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.BatchIterator;
+import Sequential.Util.BatchMetrics;
+import Sequential.Util.PrettyOutput;
+import Sequential.Util.Tensor;
+
+// The epoch and batch loop shared by the optimizers. Every batch is passed forward and backward through the
+// network, on several threads if asked to, and the optimizer then applies the gradients. The progress output,
+// monitor, flight recorder events, profiler, and checkpoints are all told about training from here, so an
+// optimizer only has to provide its update
+class TrainingLoop {
+    private TrainingLoop(){}
+
+    // Train the network with the given optimizer, continuing from a checkpoint if the start epoch or batches
+    // say so
+    static void train(Optimizer optimizer, Sequential net, int numThreads, BatchIterator batches, int startEpoch,
+                      int epochs, Checkpointer checkpoints) throws InvalidOperationException, InvalidDimensionException{
+        int numBatches = batches.numBatches();
+        Tensor xBatch;
+        Tensor yBatch;
+        batches.setPrecision(net.getPrecision());
+
+        PrettyOutput pOutput = new PrettyOutput(numBatches, epochs, 30, net.getMetrics(), net.getReportInterval());
+        BatchMetrics batchMetrics = new BatchMetrics();
+        Tensor curGradients;
+
+        DataParallel parallel = numThreads > 1 ? new DataParallel(net, numThreads) : null;
+        TrainingMonitor monitor = net.getTrainingMonitor();
+        if (monitor != null){
+            monitor.trainingStarted(net, epochs, numBatches);
+        }
+
+        try {
+            // Train over the given number of epochs
+            for (int curEpoch = startEpoch; curEpoch < epochs; curEpoch++){
+                pOutput.newEpoch(curEpoch);
+                if (monitor != null){
+                    monitor.epochStarted(curEpoch);
+                }
+                // Train over each batch
+                if (curEpoch > startEpoch || !batches.hasNext()){
+                    batches.reset();
+                }
+                while (batches.hasNext()){
+                    batches.next();
+                    long batchStart = System.nanoTime();
+                    TrainingBatchEvent batchEvent = new TrainingBatchEvent();
+                    batchEvent.begin();
+                    xBatch = batches.getInputs();
+                    yBatch = batches.getOutputs();
+                    batchMetrics.clear();
+                    if (parallel != null){
+                        parallel.computeGradients(xBatch, yBatch, batchMetrics);
+                    } else {
+                        net.forwardBatchPass(xBatch);
+                        curGradients = net.getLossJacobian(yBatch, xBatch.getDim(0), batchMetrics);
+                        net.backwardBatchPass(curGradients, xBatch);
+                    }
+                    pOutput.logProgress(batchMetrics);
+                    optimizer.applyGradients(curEpoch);
+                    batchEvent.end();
+                    if (batchEvent.shouldCommit()){
+                        batchEvent.epoch = curEpoch + 1;
+                        batchEvent.batchSize = xBatch.getDim(0);
+                        batchEvent.loss = pOutput.getLoss();
+                        batchEvent.commit();
+                    }
+                    if (monitor != null){
+                        monitor.batchFinished(xBatch.getDim(0), System.nanoTime() - batchStart, pOutput.getLoss(),
+                                pOutput.getAccuracy());
+                    }
+                    if (checkpoints != null){
+                        checkpoints.batchFinished(net, batches, curEpoch);
+                    }
+                }
+                pOutput.finishEpoch();
+                if (net.getProfiler() != null){
+                    net.getProfiler().finishEpoch(curEpoch);
+                }
+            }
+        } finally {
+            pOutput.close();
+            if (parallel != null){
+                parallel.shutdown();
+            }
+        }
+    }
+}
@@ -3,14 +3,27 @@
 
 package Sequential;
 
+import Sequential.Data.*;
+import Sequential.Inference.InferenceSession;
 import Sequential.Layers.TrainableLayer.*;
 import Sequential.Layers.*;
 import Sequential.LossFunctions.*;
+import Sequential.MatMulBackends.*;
+import Sequential.Monitoring.InferenceMonitor;
+import Sequential.Monitoring.TrainingMonitor;
+import Sequential.NetOps.Checkpointer;
 import Sequential.Optimizers.*;
 import Sequential.Optimizers.Optimizer;
 import Sequential.SequentialExceptions.*;
 import Sequential.Util.*;
 import static java.lang.String.format;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -23,6 +36,19 @@ public class Sequential {
     private LossFunction lossFunc = new MeanSquaredError();
     private String[] metrics;
     private int[] inDim;
+    private Precision precision = Precision.DOUBLE;
+    private MatMulBackend backend = new EjmlBackend();
+    // Built when the network is compiled, and dropped if layers are added afterwards
+    private ExecutionPlan plan;
+    // Measures the layers of the network while it trains, or null when it is not being profiled
+    private Profiler profiler;
+    // Told about the progress of training and about predictions, or null when they are not monitored
+    private TrainingMonitor trainingMonitor;
+    private InferenceMonitor inferenceMonitor;
+    // Milliseconds between prints of the progress of training
+    private long reportInterval = PrettyOutput.DEFAULT_REPORT_MILLIS;
+    // Number of examples passed through the network at once when evaluating a data set
+    private static final int EVAL_BATCH_SIZE = 64;
 
     /**
      * Constructs a new Sequential object.
@@ -45,6 +71,10 @@ public class Sequential {
         if (getLastLayer() instanceof Trainable){
             addSoftMax();
         }
+        if (layers.size() > 0){
+            plan = new ExecutionPlan(layers, inDim);
+            plan.setProfiler(profiler);
+        }
     }
 
     /**
@@ -57,7 +87,20 @@ public class Sequential {
     public void compile(LossFunction lossFunc) throws InvalidOperationException, InvalidDimensionException {
         compile();
         this.lossFunc = lossFunc;
+        fuseLossGradient();
+    }
+
+    // If the network ends with a softmax layer and uses cross entropy loss, have the loss jacobian
+    // be taken with respect to the inputs of the softmax layer so that its jacobian is never formed
+    private void fuseLossGradient(){
+        if (getLastLayer() instanceof SoftMaxLayer){
+            ((SoftMaxLayer) getLastLayer()).setFusedWithLoss(lossFunc instanceof CrossEntropy);
+        }
+    }
 
+    // Return true if the loss jacobian is taken with respect to the inputs of the last layer
+    private boolean isLossGradientFused(){
+        return getLastLayer() instanceof SoftMaxLayer && ((SoftMaxLayer) getLastLayer()).isFusedWithLoss();
     }
 
     /**
@@ -87,24 +130,93 @@ public class Sequential {
         this.opt = opt;
     }
 
+    /**
+     * Sets the loss function, optimizer, metrics, and precision of the network to the given values.
+     * Weights, activations, gradients, and optimizer state are all stored with the given precision.
+     * @param lossFunc The loss function to be used by the network.
+     * @param opt The optimizer to be used by the network.
+     * @param metrics The metrics to be used by the network.
+     * @param precision The floating point precision to be used by the network.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public void compile(LossFunction lossFunc, Optimizer opt, String[] metrics, Precision precision)
+            throws InvalidOperationException, InvalidDimensionException {
+        compile(lossFunc, opt, metrics);
+        this.precision = precision;
+        for (int i = 0; i < layers.size(); i++){
+            if (layers.get(i) instanceof Trainable){
+                ((Trainable) layers.get(i)).setPrecision(precision);
+            }
+        }
+    }
+
     // Return the partial derivatives of the loss function with respect to the
-    // activations of the final layer
-    public double[][] getLossJacobian(double[][] expected) throws InvalidDimensionException{
-        double[][] lastAct = layers.get(layers.size() - 1).getLayerResult();
-        if (lastAct.length != expected.length || lastAct[0].length != expected[0].length){
+    // activations of the final layer, or its inputs if the final layer is a softmax layer
+    // and the loss is cross entropy
+    public Tensor getLossJacobian(Tensor expected) throws InvalidDimensionException{
+        return getLossJacobian(expected, getLastLayer().getLayerResult().getDim(0));
+    }
+
+    // Return the partial derivatives of the loss function with respect to the activations of the
+    // final layer when the last pass was one part of a batch of the given size
+    public Tensor getLossJacobian(Tensor expected, int batchSize) throws InvalidDimensionException{
+        return getLossJacobian(expected, batchSize, null);
+    }
+
+    // Return the partial derivatives of the loss as above, adding the loss of every example and whether
+    // it was predicted correctly to the given metrics, if they are not null, in the same pass
+    public Tensor getLossJacobian(Tensor expected, int batchSize, BatchMetrics metrics) throws InvalidDimensionException{
+        Tensor lastAct = layers.get(layers.size() - 1).getLayerResult();
+        if (!lastAct.sameShape(expected)){
             throw new InvalidDimensionException("calculateBatchLoss: mismatch dimensions of expected vs actual");
         }
-        double[][] ret = new double[lastAct.length][lastAct[0].length];
-        for (int i = 0; i < lastAct.length; i++){
-            ret[i] = lossFunc.calculatePDerivatives(expected[i], lastAct[i]);
-            // derivatives need to be multiplied by 1/batchsize because loss is calculated by doing this
-            for (int j = 0; j < lastAct[0].length; j++){
-                ret[i][j] = ret[i][j] / lastAct.length;
+        Tensor ret = lastAct.like(lastAct.getDim(0), lastAct.getDim(1));
+        boolean fused = isLossGradientFused();
+        for (int i = 0; i < lastAct.getDim(0); i++){
+            Tensor expectedRow = expected.row(i);
+            Tensor actualRow = lastAct.row(i);
+            if (fused){
+                ((CrossEntropy) lossFunc).calculateSoftMaxPDerivatives(expectedRow, actualRow, ret.row(i));
+            } else {
+                lossFunc.calculatePDerivatives(expectedRow, actualRow, ret.row(i));
             }
+            if (metrics != null){
+                metrics.add(lossFunc.calculateLoss(expectedRow, actualRow), MetricCalculator.isCorrect(actualRow, expectedRow));
+            }
+        }
+        // derivatives need to be multiplied by 1/batchsize because loss is calculated by doing this
+        for (int i = 0; i < ret.size(); i++){
+            ret.setFlat(i, ret.getFlat(i) / batchSize);
         }
         return ret;
     }
 
+    // Return a network that shares the weights of this network, but keeps its own layer results
+    // and gradients so that it can be passed batches on a different thread
+    public Sequential replicate() throws InvalidDimensionException{
+        Sequential ret = new Sequential();
+        ret.opt = opt;
+        ret.lossFunc = lossFunc;
+        ret.metrics = metrics;
+        ret.inDim = inDim;
+        ret.precision = precision;
+        ret.backend = backend;
+        for (int i = 0; i < layers.size(); i++){
+            ret.addLayer(layers.get(i).replicate());
+        }
+        if (plan != null){
+            ret.plan = new ExecutionPlan(ret.layers, inDim);
+        }
+        return ret;
+    }
+
+    // Return a session that predicts with this network's weights on its own buffers, so that several
+    // threads can predict at once by each using their own session
+    public InferenceSession newSession() throws InvalidOperationException, InvalidDimensionException{
+        return new InferenceSession(this);
+    }
+
     // Perform a prediction by making a forward pass through the network.
     public void predict(double[][][][] input) throws InvalidDimensionException{
         double[] flatIn;
@@ -118,8 +230,12 @@ public class Sequential {
         }
     }
 
-    // Perform a foward pass of a batch through the network
-    public double[][] forwardBatchPass(double[][] input) throws InvalidDimensionException{
+    // Perform a foward pass of a batch through the network. Layers write their results into
+    // reused buffers, so the returned tensor is only valid until the next pass
+    public Tensor forwardBatchPass(Tensor input) throws InvalidDimensionException{
+        if (plan != null){
+            return plan.forward(input);
+        }
         // Perform pass
         for (int i = 0; i < layers.size(); i++){
             input = layers.get(i).forwardBatchPass(input);
@@ -127,12 +243,83 @@ public class Sequential {
         return input;
     }
 
-    // Perform a forward pass (not batch-wise) through the network
-    private double[] forwardPass(double[] input) throws InvalidDimensionException{
-        for (int i = 0; i < layers.size(); i++){
-            input = layers.get(i).forwardPass(input);
+    // Pass the gradients of the loss with respect to the output of the last forward pass, which was given
+    // the input, backward through the network. Every trainable layer is left holding its gradients
+    public Tensor backwardBatchPass(Tensor jacob, Tensor input) throws InvalidDimensionException{
+        if (plan != null){
+            return plan.backward(jacob);
         }
-        return input;
+        for (int j = layers.size() - 1; j >= 0; j--){
+            if (j > 0){
+                jacob = layers.get(j).computeGradients(jacob, layers.get(j - 1).getLayerResult());
+            } else {
+                jacob = layers.get(j).computeGradients(jacob, input);
+            }
+        }
+        return jacob;
+    }
+
+    // Return the execution plan built when the network was compiled, or null if it has not been compiled
+    public ExecutionPlan getPlan(){
+        return plan;
+    }
+
+    /**
+     * Profile the time, allocations, and estimated floating point operations of each layer while the network
+     * trains, printing a summary at the end of every epoch. Profiling costs nothing while it is off.
+     * @param profiler The profiler to record with, or null to stop profiling.
+     */
+    public void setProfiler(Profiler profiler){
+        this.profiler = profiler;
+        if (plan != null){
+            plan.setProfiler(profiler);
+        }
+    }
+
+    // Return the profiler of the network, or null if it is not being profiled
+    public Profiler getProfiler(){
+        return profiler;
+    }
+
+    /**
+     * Report the progress and throughput of training to the given monitor, which can publish them through JMX.
+     * @param monitor The monitor to report to, or null to stop monitoring training.
+     */
+    public void setTrainingMonitor(TrainingMonitor monitor){
+        this.trainingMonitor = monitor;
+    }
+
+    // Return the monitor training reports to, or null if training is not monitored
+    public TrainingMonitor getTrainingMonitor(){
+        return trainingMonitor;
+    }
+
+    /**
+     * Report the predictions of sessions created from now on to the given monitor, which can publish them
+     * through JMX.
+     * @param monitor The monitor to report to, or null to stop monitoring new sessions.
+     */
+    public void setInferenceMonitor(InferenceMonitor monitor){
+        this.inferenceMonitor = monitor;
+    }
+
+    // Return the monitor new sessions report their predictions to, or null if predictions are not monitored
+    public InferenceMonitor getInferenceMonitor(){
+        return inferenceMonitor;
+    }
+
+    /**
+     * Set how often the progress bar is updated while training. Progress is printed from a separate thread,
+     * so a longer interval only makes the bar less responsive, it does not slow training.
+     * @param millis Milliseconds between updates of the progress bar.
+     */
+    public void setReportInterval(long millis){
+        this.reportInterval = millis;
+    }
+
+    // Return the milliseconds between updates of the progress bar while training
+    public long getReportInterval(){
+        return reportInterval;
     }
 
     // Return the layers arraylist for the network
@@ -155,63 +342,170 @@ public class Sequential {
         return opt;
     }
 
+    // Return the precision the network stores its values with
+    public Precision getPrecision(){
+        return precision;
+    }
+
+    // Set the kernel every layer of the network uses to multiply matrices
+    public void setMatMulBackend(MatMulBackend backend){
+        this.backend = backend;
+        for (int i = 0; i < layers.size(); i++){
+            layers.get(i).setBackend(backend);
+        }
+    }
+
+    // Return the kernel the layers of the network use to multiply matrices
+    public MatMulBackend getMatMulBackend(){
+        return backend;
+    }
+
     // TODO - CHECK THAT THIS IS A VALID OPERATION
     public void fit(double[][][][] x, double[][] y, int batchSize, int epochs)
             throws InvalidOperationException, InvalidDimensionException{
+        fit(x, y, batchSize, epochs, false);
+    }
+
+    // Train the network, optionally shuffling the order of the examples every epoch
+    public void fit(double[][][][] x, double[][] y, int batchSize, int epochs, boolean shuffle)
+            throws InvalidOperationException, InvalidDimensionException{
+        if (this.metrics == null){
+            throw new InvalidOperationException("Must compile the network before trying to train the network");
+        }
+        fit(new ArrayDataset(x, y), batchSize, epochs, shuffle);
+    }
+
+    // Train the network on the examples of the given data set, optionally shuffling their order every epoch
+    public void fit(Dataset data, int batchSize, int epochs, boolean shuffle)
+            throws InvalidOperationException, InvalidDimensionException{
+        fit(new BatchIterator(data, batchSize, shuffle), epochs);
+    }
+
+    // Train the network on the batches given by the iterator, such as a prefetching DataPipeline
+    public void fit(BatchIterator batches, int epochs) throws InvalidOperationException, InvalidDimensionException{
+        if (this.metrics == null){
+            throw new InvalidOperationException("Must compile the network before trying to train the network");
+        }
+        opt.constructOptimizer(this);
+        opt.trainNetwork(batches, epochs);
+    }
+
+    // Train the network while periodically checkpointing it. If the checkpointer already has a checkpoint,
+    // the network, its optimizer, and the batches are restored from it and training continues from there.
+    // A final checkpoint is written once training finishes
+    public void fit(BatchIterator batches, int epochs, Checkpointer checkpoints)
+            throws InvalidOperationException, InvalidDimensionException, InvalidNetworkFormatException, IOException{
         if (this.metrics == null){
             throw new InvalidOperationException("Must compile the network before trying to train the network");
         }
         opt.constructOptimizer(this);
-        opt.trainNetwork(x, y, batchSize, epochs);
+        int startEpoch = checkpoints.resume(this, batches);
+        if (startEpoch >= epochs){
+            return;
+        }
+        opt.trainNetwork(batches, startEpoch, epochs, checkpoints);
+        checkpoints.save(this, batches, epochs - 1);
     }
 
 
-    // TODO -- I COULD OPTIMIZE THIS
-    // Evaluates the network by running each testing pair individually and not in
-    // batches
+    // Evaluates the network on the given examples and prints the loss, and the accuracy if it is a metric
     public void evaluate(double[][][][] x, double[][] y) throws InvalidOperationException,
             InvalidDimensionException{
-        if (metrics == null){
-            throw new InvalidOperationException("Must compile the network before evaluating the network");
-        }
         if (x.length != y.length){
             throw new InvalidDimensionException("Must have same number of input examples as output examples");
         }
-        System.out.print("Evaluation: ");
-        boolean calcAccuracy = false;
-        double[][] flatBatch = new double[x.length][x[0].length * x[1].length * x[2].length];
-        MetricCalculator ms = new MetricCalculator(getLastLayer(), lossFunc);
-        double totalLoss = 0;
-        double numCorrect = 0;
-        double[] result;
-
-        // Flatten the batches
-        for (int i = 0; i < x.length; i++){
-            flatBatch[i] = NetUtil.three2OneD(x[i]);
-        }
+        evaluate(new ArrayDataset(x, y));
+    }
 
-        // See what metrics we need to calculate
+    // Evaluates the network on the examples of the given data set, passing them through the network in batches
+    public void evaluate(Dataset data) throws InvalidOperationException, InvalidDimensionException{
+        EvaluationResult result = evaluate(data, EVAL_BATCH_SIZE, 1);
+        System.out.print("Evaluation: ");
+        System.out.print(format("Loss: %5f", result.getLoss()));
         for (int i = 0; i < metrics.length; i++){
             if (metrics[i].equalsIgnoreCase("accuracy")){
-                calcAccuracy = true;
+                System.out.print(format(" Accuracy: %5f", result.getAccuracy()));
                 break;
             }
         }
+        System.out.println();
+    }
 
-        // Calculate stats for each training example
-        for (int i = 0; i < x.length; i++){
-            result = forwardPass(NetUtil.three2OneD(x[i]));
-            totalLoss += lossFunc.calculateLoss(y[i], result);
-            if (calcAccuracy){
-                numCorrect += ms.isCorrect(result, y[i]);
+    // Evaluates the network on the examples of the given data set in batches of the given size, split
+    // across the given number of threads. Each thread predicts with its own session and keeps its own
+    // totals, which are merged once every batch is done
+    public EvaluationResult evaluate(Dataset data, int batchSize, int numThreads)
+            throws InvalidOperationException, InvalidDimensionException{
+        if (metrics == null){
+            throw new InvalidOperationException("Must compile the network before evaluating the network");
+        }
+        if (batchSize < 1 || numThreads < 1){
+            throw new InvalidOperationException("Must evaluate with a batch size and number of threads of at least 1");
+        }
+        EvaluationResult ret = new EvaluationResult(data.getOutSize());
+        AtomicInteger nextBatch = new AtomicInteger();
+        int numBatches = (data.size() + batchSize - 1) / batchSize;
+        numThreads = Math.min(numThreads, numBatches);
+        if (numThreads <= 1){
+            ret.merge(evaluateBatches(data, batchSize, nextBatch));
+            return ret;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        ArrayList<Future<EvaluationResult>> parts = new ArrayList<Future<EvaluationResult>>();
+        try {
+            for (int i = 0; i < numThreads; i++){
+                parts.add(pool.submit(new Callable<EvaluationResult>() {
+                    @Override
+                    public EvaluationResult call() throws InvalidOperationException, InvalidDimensionException{
+                        return evaluateBatches(data, batchSize, nextBatch);
+                    }
+                }));
+            }
+            for (int i = 0; i < parts.size(); i++){
+                ret.merge(parts.get(i).get());
             }
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof InvalidDimensionException){
+                throw (InvalidDimensionException) e.getCause();
+            } else if (e.getCause() instanceof InvalidOperationException){
+                throw (InvalidOperationException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating the network", e);
+        } finally {
+            pool.shutdownNow();
         }
+        return ret;
+    }
 
-        System.out.print(format("Loss: %5f", totalLoss / x.length));
-        if (calcAccuracy){
-            System.out.print(format(" Accuracy: %5f", numCorrect / x.length));
+    // Evaluate batches of the data set until there are none left, taking the next batch from the shared counter
+    private EvaluationResult evaluateBatches(Dataset data, int batchSize, AtomicInteger nextBatch)
+            throws InvalidOperationException, InvalidDimensionException{
+        InferenceSession session = newSession();
+        EvaluationResult ret = new EvaluationResult(data.getOutSize());
+        int[] indices = new int[batchSize];
+        Tensor expected = new Tensor(precision, batchSize, data.getOutSize());
+        int batch;
+        while ((batch = nextBatch.getAndIncrement()) < (data.size() + batchSize - 1) / batchSize){
+            int start = batch * batchSize;
+            int numExamples = Math.min(batchSize, data.size() - start);
+            for (int i = 0; i < numExamples; i++){
+                indices[i] = start + i;
+            }
+            Tensor x = session.reserve(numExamples);
+            Tensor y = expected.slice(0, numExamples);
+            data.readBatch(indices, 0, numExamples, x, y);
+            Tensor result = session.predict(x);
+            for (int i = 0; i < numExamples; i++){
+                ret.add(y.row(i), result.row(i), lossFunc.calculateLoss(y.row(i), result.row(i)));
+            }
         }
-        System.out.println();
+        return ret;
     }
 
     // Prints information about the network
@@ -252,10 +546,10 @@ public class Sequential {
             addRelu();
         }
 
-        layers.add(new DenseLayer(numNodes, inDim));
+        addLayer(new DenseLayer(numNodes, inDim));
         // Optionally add activation function after this layer
         if (actFunc != null){
-            layers.add(ActivationDisbatch.getActFunc(actFunc, layers.get(layers.size() - 1).getOutDim()));
+            addLayer(ActivationDisbatch.getActFunc(actFunc, layers.get(layers.size() - 1).getOutDim()));
         }
     }
 
@@ -285,10 +579,10 @@ public class Sequential {
             strideLength[0] = 1;
             strideLength[1] = 1;
         }
-        layers.add(new ConvLayer(numFilters, filterDims, inDim, strideLength));
+        addLayer(new ConvLayer(numFilters, filterDims, inDim, strideLength));
         // optinally add an activation layer
         if (actFunc != null){
-            layers.add(ActivationDisbatch.getActFunc(actFunc, layers.get(layers.size() - 1).getOutDim()));
+            addLayer(ActivationDisbatch.getActFunc(actFunc, layers.get(layers.size() - 1).getOutDim()));
         }
     }
 
@@ -317,7 +611,14 @@ public class Sequential {
             strideLength[0] = poolDims[0];
             strideLength[1] = poolDims[1];
         }
-        layers.add(new MaxPool(poolDims, inDim, strideLength));
+        addLayer(new MaxPool(poolDims, inDim, strideLength));
+    }
+
+    // Add the given layer to the end of the network
+    private void addLayer(Layer layer){
+        layer.setBackend(backend);
+        layers.add(layer);
+        plan = null;
     }
 
     // Adds a Relu activation layer to the network
@@ -325,7 +626,7 @@ public class Sequential {
         if (layers.size() == 0){
             throw new InvalidOperationException("First network layer cannot be an activation layer");
         }
-        layers.add(new ReluLayer(getLastLayer().getOutDim()));
+        addLayer(new ReluLayer(getLastLayer().getOutDim()));
     }
 
     // Adds a Relu activation layer to the network
@@ -333,7 +634,7 @@ public class Sequential {
         if (layers.size() == 0){
             throw new InvalidOperationException("First network layer cannot be an activation layer");
         }
-        layers.add(new SigmoidLayer(getLastLayer().getOutDim()));
+        addLayer(new SigmoidLayer(getLastLayer().getOutDim()));
     }
 
     // Adds a Relu activation layer to the network
@@ -341,6 +642,6 @@ public class Sequential {
         if (layers.size() == 0){
             throw new InvalidOperationException("First network layer cannot be an activation layer");
         }
-        layers.add(new SoftMaxLayer(getLastLayer().getOutDim()));
+        addLayer(new SoftMaxLayer(getLastLayer().getOutDim()));
     }
 }
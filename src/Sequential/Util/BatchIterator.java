@@ -0,0 +1,167 @@
+package Sequential.Util;
+
+import Sequential.Data.ArrayDataset;
+import Sequential.Data.Dataset;
+import Sequential.SequentialExceptions.InvalidDimensionException;
+import Sequential.SequentialExceptions.InvalidOperationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+/**
+ * Iterates over a data set in batches. Each batch is read from the data set into reused flat
+ * buffers, so the data set itself is never copied. The order of the examples can be shuffled at
+ * the start of every epoch, and the last batch of an epoch holds whatever examples remain.
+ */
+public class BatchIterator {
+    protected Dataset data;
+    protected int batchSize;
+    protected int inSize;
+    private boolean shuffle;
+    private Random rand = new Random();
+    protected Precision precision = Precision.DOUBLE;
+    // The order examples are read in this epoch, and the location in it of the next batch
+    protected int[] order;
+    protected int cursor;
+    private Tensor xBuffer;
+    private Tensor yBuffer;
+    protected Tensor xBatch;
+    protected Tensor yBatch;
+
+    /**
+     * Constructs a new BatchIterator over the given inputs and expected outputs.
+     * @param x Array of 3D inputs.
+     * @param y Array of 1D expected outputs corresponding to the inputs.
+     * @param batchSize Maximum number of examples in each batch.
+     * @param shuffle Whether the order of the examples should be shuffled at the start of every epoch.
+     * @throws InvalidDimensionException
+     */
+    public BatchIterator(double[][][][] x, double[][] y, int batchSize, boolean shuffle) throws InvalidDimensionException{
+        this(new ArrayDataset(x, y), batchSize, shuffle);
+    }
+
+    /**
+     * Constructs a new BatchIterator over the given data set.
+     * @param data The examples to iterate over.
+     * @param batchSize Maximum number of examples in each batch.
+     * @param shuffle Whether the order of the examples should be shuffled at the start of every epoch.
+     * @throws InvalidDimensionException
+     */
+    public BatchIterator(Dataset data, int batchSize, boolean shuffle) throws InvalidDimensionException{
+        if (data.size() == 0){
+            throw new InvalidDimensionException("BatchIterator: Data set must not be empty");
+        }
+        if (batchSize < 1){
+            throw new InvalidDimensionException("BatchIterator: Batch size must be at least 1");
+        }
+        this.data = data;
+        this.batchSize = Math.min(batchSize, data.size());
+        this.shuffle = shuffle;
+        int[] inDim = data.getInDim();
+        inSize = inDim[0] * inDim[1] * inDim[2];
+        order = new int[data.size()];
+        for (int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        cursor = order.length;
+    }
+
+    // Seed the generator used to shuffle the examples
+    public void setSeed(long seed){
+        rand = new Random(seed);
+    }
+
+    // Set the precision of the batches given by this iterator
+    public void setPrecision(Precision precision){
+        this.precision = precision;
+    }
+
+    // Return the number of examples in the data set
+    public int size(){
+        return order.length;
+    }
+
+    // Return the number of batches in each epoch, including the last partial batch
+    public int numBatches(){
+        return (order.length + batchSize - 1) / batchSize;
+    }
+
+    // Start a new epoch, shuffling the order of the examples if requested
+    public void reset(){
+        cursor = 0;
+        if (shuffle){
+            data.shuffle(order, rand);
+        }
+    }
+
+    // Return true if there are batches left in this epoch
+    public boolean hasNext(){
+        return cursor < order.length;
+    }
+
+    // Return the location in the order of the next batch of this epoch
+    public int getCursor(){
+        return cursor;
+    }
+
+    // Copy the order examples are read in this epoch into the given array
+    public void copyOrder(int[] dst){
+        System.arraycopy(order, 0, dst, 0, order.length);
+    }
+
+    // Return the serialized state of the shuffle generator, so that the epochs after a restore are
+    // shuffled the same way they would have been
+    public byte[] getShuffleState(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(rand);
+        } catch (IOException e){
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Continue an epoch from a saved order, location in it, and shuffle state
+    public void restore(int[] order, int cursor, byte[] shuffleState) throws InvalidDimensionException, IOException{
+        if (order.length != this.order.length || cursor < 0 || cursor > order.length){
+            throw new InvalidDimensionException("BatchIterator: Saved position does not match the data set");
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(shuffleState))){
+            rand = (Random) in.readObject();
+        } catch (ClassNotFoundException e){
+            throw new IOException("BatchIterator: Invalid shuffle state", e);
+        }
+        System.arraycopy(order, 0, this.order, 0, order.length);
+        this.cursor = cursor;
+    }
+
+    // Gather the next batch of the epoch into the batch buffers. The batch is only valid until the next call
+    public void next() throws InvalidOperationException, InvalidDimensionException{
+        if (!hasNext()){
+            throw new InvalidOperationException("BatchIterator: No batches left in this epoch");
+        }
+        if (xBuffer == null || xBuffer.getPrecision() != precision){
+            xBuffer = new Tensor(precision, batchSize, inSize);
+            yBuffer = new Tensor(precision, batchSize, data.getOutSize());
+        }
+        int end = Math.min(cursor + batchSize, order.length);
+        data.readBatch(order, cursor, end, xBuffer, yBuffer);
+        xBatch = xBuffer.slice(0, end - cursor);
+        yBatch = yBuffer.slice(0, end - cursor);
+        cursor = end;
+    }
+
+    // Return the flattened inputs of the current batch
+    public Tensor getInputs(){
+        return xBatch;
+    }
+
+    // Return the expected outputs of the current batch
+    public Tensor getOutputs(){
+        return yBatch;
+    }
+}
@@ -0,0 +1,44 @@
+package Sequential.Util;
+
+// Primitive totals of the loss and accuracy of one training batch, filled in while the gradients of the
+// loss are computed so that the outputs of the network are only read once per batch. Shards of a batch
+// trained on separate threads each fill their own, which are then added together
+public class BatchMetrics {
+    private double totalLoss;
+    private int numCorrect;
+    private int numExamples;
+
+    // Add the loss of one example and whether the network predicted its class
+    public void add(double loss, int correct){
+        totalLoss += loss;
+        numCorrect += correct;
+        numExamples++;
+    }
+
+    // Add the totals of another shard of the batch
+    public void add(BatchMetrics other){
+        totalLoss += other.totalLoss;
+        numCorrect += other.numCorrect;
+        numExamples += other.numExamples;
+    }
+
+    public void clear(){
+        totalLoss = 0;
+        numCorrect = 0;
+        numExamples = 0;
+    }
+
+    // Return the average loss of the examples of the batch
+    public double getLoss(){
+        return totalLoss / numExamples;
+    }
+
+    // Return the fraction of the examples of the batch whose class was predicted
+    public double getAccuracy(){
+        return numCorrect / (double) numExamples;
+    }
+
+    public int getNumExamples(){
+        return numExamples;
+    }
+}
@@ -0,0 +1,144 @@
+package Sequential.Util;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+
+import static java.lang.String.format;
+
+/**
+ * Totals of evaluating a network on a set of examples: the loss, the accuracy, and a confusion matrix
+ * from which the precision and recall of each class are found. The class of an expected output and of a
+ * prediction is the location of its largest value. Results of evaluating separate parts of a data set,
+ * such as on different threads, can be merged.
+ */
+public class EvaluationResult {
+    private int numClasses;
+    private int numExamples;
+    private double totalLoss;
+    private double numCorrect;
+    // Number of examples of each expected class (row) predicted as each class (column)
+    private long[][] confusion;
+
+    /**
+     * Constructs a new, empty EvaluationResult.
+     * @param numClasses Length of the expected outputs of the network.
+     */
+    public EvaluationResult(int numClasses){
+        this.numClasses = numClasses;
+        confusion = new long[numClasses][numClasses];
+    }
+
+    // Add one example given its expected output, the output of the network, and its loss
+    public void add(Tensor expected, Tensor actual, double loss) throws InvalidDimensionException{
+        if (expected.size() != numClasses || actual.size() != numClasses){
+            throw new InvalidDimensionException("EvaluationResult: Outputs must have " + numClasses + " values");
+        }
+        int predicted = argMax(actual);
+        numExamples++;
+        totalLoss += loss;
+        // Correct in the same sense as MetricCalculator.isCorrect
+        numCorrect += (int) expected.get(predicted);
+        confusion[argMax(expected)][predicted]++;
+    }
+
+    // Add the totals of another result to this one
+    public void merge(EvaluationResult other) throws InvalidDimensionException{
+        if (other.numClasses != numClasses){
+            throw new InvalidDimensionException("EvaluationResult: Cannot merge results with different numbers of classes");
+        }
+        numExamples += other.numExamples;
+        totalLoss += other.totalLoss;
+        numCorrect += other.numCorrect;
+        for (int i = 0; i < numClasses; i++){
+            for (int j = 0; j < numClasses; j++){
+                confusion[i][j] += other.confusion[i][j];
+            }
+        }
+    }
+
+    /**
+     * Return the number of examples evaluated.
+     * @return The number of examples.
+     */
+    public int getNumExamples(){
+        return numExamples;
+    }
+
+    /**
+     * Return the average loss over the examples.
+     * @return The average loss.
+     */
+    public double getLoss(){
+        return totalLoss / numExamples;
+    }
+
+    /**
+     * Return the fraction of examples whose largest output was at the location of their expected class.
+     * @return The accuracy.
+     */
+    public double getAccuracy(){
+        return numCorrect / numExamples;
+    }
+
+    /**
+     * Return the precision of a class: the fraction of examples predicted as the class that belong to it.
+     * @param c The class.
+     * @return The precision of the class, or 0 if no example was predicted as the class.
+     */
+    public double getPrecision(int c){
+        long predicted = 0;
+        for (int i = 0; i < numClasses; i++){
+            predicted += confusion[i][c];
+        }
+        return predicted == 0 ? 0 : confusion[c][c] / (double) predicted;
+    }
+
+    /**
+     * Return the recall of a class: the fraction of examples belonging to the class that were predicted as it.
+     * @param c The class.
+     * @return The recall of the class, or 0 if no example belongs to the class.
+     */
+    public double getRecall(int c){
+        long actual = 0;
+        for (int j = 0; j < numClasses; j++){
+            actual += confusion[c][j];
+        }
+        return actual == 0 ? 0 : confusion[c][c] / (double) actual;
+    }
+
+    /**
+     * Return the confusion matrix, where the entry at row i and column j is the number of examples of class i
+     * that were predicted as class j.
+     * @return A copy of the confusion matrix.
+     */
+    public long[][] getConfusionMatrix(){
+        long[][] ret = new long[numClasses][];
+        for (int i = 0; i < numClasses; i++){
+            ret[i] = confusion[i].clone();
+        }
+        return ret;
+    }
+
+    /**
+     * Return the number of classes.
+     * @return The length of the expected outputs.
+     */
+    public int getNumClasses(){
+        return numClasses;
+    }
+
+    // Summarize the loss and accuracy in the format printed during training
+    @Override
+    public String toString(){
+        return format("Loss: %5f Accuracy: %5f", getLoss(), getAccuracy());
+    }
+
+    private static int argMax(Tensor t){
+        int ret = 0;
+        for (int i = 1; i < t.size(); i++){
+            if (t.get(i) > t.get(ret)){
+                ret = i;
+            }
+        }
+        return ret;
+    }
+}
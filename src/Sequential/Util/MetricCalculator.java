@@ -18,34 +18,43 @@ public class MetricCalculator {
     }
 
     // Return the average loss given a batch of outputs
-    public double calculateBatchLoss(double[][] expected)
+    public double calculateBatchLoss(Tensor expected)
             throws InvalidDimensionException, InvalidOperationException {
-        double[][] lastAct = lastLayer.getLayerResult();
+        Tensor lastAct = lastLayer.getLayerResult();
         if (lastAct == null){
             throw new InvalidOperationException("Batch loss cannot be calculated if there has not yet beed a foward pass");
         }
-        if (lastAct.length != expected.length || lastAct[0].length != expected[0].length){
+        return calculateBatchLoss(expected, lastAct);
+    }
+
+    // Return the average loss given a batch of expected outputs and the activations of the last layer
+    public double calculateBatchLoss(Tensor expected, Tensor lastAct) throws InvalidDimensionException{
+        if (!lastAct.sameShape(expected)){
             throw new InvalidDimensionException("calculateBatchLoss: mismatch dimensions of expected vs actual");
         }
         double sum = 0;
-        for (int i = 0; i < lastAct.length; i++){
-            sum += lossFunc.calculateLoss(expected[i], lastAct[i]);
+        for (int i = 0; i < lastAct.getDim(0); i++){
+            sum += lossFunc.calculateLoss(expected.row(i), lastAct.row(i));
         }
-        return sum / lastAct.length;
+        return sum / lastAct.getDim(0);
     }
 
     // Return the accuracy of a batch of data given the expected values
-    public double calculateBatchAccuracy(double[][] expected) throws InvalidDimensionException{
-        double[][] lastAct = lastLayer.getLayerResult();
-        if (expected.length != lastAct.length || expected[0].length != lastAct[0].length){
+    public double calculateBatchAccuracy(Tensor expected) throws InvalidDimensionException{
+        return calculateBatchAccuracy(expected, lastLayer.getLayerResult());
+    }
+
+    // Return the accuracy of a batch of data given the expected values and the activations of the last layer
+    public double calculateBatchAccuracy(Tensor expected, Tensor lastAct) throws InvalidDimensionException{
+        if (!lastAct.sameShape(expected)){
             throw new InvalidDimensionException("cBatchAccuracy: Expected batch results and last layer activations" +
                     "must have the same dimensions.");
         }
         int numCorrect = 0;
-        for (int i = 0; i < expected.length; i++){
-            numCorrect += isCorrect(lastAct[i], expected[i]);
+        for (int i = 0; i < expected.getDim(0); i++){
+            numCorrect += isCorrect(lastAct.row(i), expected.row(i));
         }
-        return numCorrect / (double)lastAct.length;
+        return numCorrect / (double)lastAct.getDim(0);
     }
 
     // Return the accuracy of an array of activations vs an array of expected values
@@ -65,4 +74,22 @@ public class MetricCalculator {
         }
         return (int)expected[argMax];
     }
+
+    // Return 1 if the max value of the rank 1 tensor of activations is at the location of the
+    // expected value, 0 otherwise
+    public static int isCorrect(Tensor actual, Tensor expected) throws InvalidDimensionException{
+        if (!actual.sameShape(expected)){
+            throw new InvalidDimensionException("calculateAccuracy: length of actual and expected arrays must be identical");
+        }
+        // get the max of the actual array
+        int argMax = -1;
+        double max = Integer.MIN_VALUE;
+        for (int i = 0; i < actual.getDim(0); i++){
+            if (actual.get(i) > max){
+                max = actual.get(i);
+                argMax = i;
+            }
+        }
+        return (int)expected.get(argMax);
+    }
 }
@@ -4,9 +4,12 @@
 package Sequential.Util;
 
 import org.ejml.simple.SimpleMatrix;
+import Sequential.MatMulBackends.EjmlBackend;
+import Sequential.MatMulBackends.MatMulBackend;
 import Sequential.SequentialExceptions.InvalidDimensionException;
 
 public class NetUtil {
+    private static final MatMulBackend DEFAULT_BACKEND = new EjmlBackend();
 
     // Use ejml lib to do efficient matrix multiplication
     public static double[][] matMult(double[][] m1, double[][] m2) throws InvalidDimensionException{
@@ -19,6 +22,37 @@ public class NetUtil {
         return one2TwoD(result.getDDRM().data, m1.length, m2[0].length);
     }
 
+    // Multiply two rank 2 tensors into a new tensor using the default backend. If either tensor is
+    // single precision the multiplication is done, and the result is stored, in single precision
+    public static Tensor matMult(Tensor m1, Tensor m2) throws InvalidDimensionException{
+        if (m1.rank() != 2 || m2.rank() != 2){
+            throw new InvalidDimensionException("matMult: Tensors to be multiplied must be of rank 2");
+        }
+        Precision precision = Precision.DOUBLE;
+        if (m1.getPrecision() == Precision.FLOAT || m2.getPrecision() == Precision.FLOAT){
+            precision = Precision.FLOAT;
+        }
+        Tensor ret = new Tensor(precision, m1.getDim(0), m2.getDim(1));
+        DEFAULT_BACKEND.matMult(m1, m2, ret);
+        return ret;
+    }
+
+    // Throw if the given tensors can't be multiplied, or if the output tensor can't hold the result
+    public static void checkMatMult(Tensor m1, Tensor m2, Tensor out) throws InvalidDimensionException{
+        if (m1.rank() != 2 || m2.rank() != 2 || out.rank() != 2){
+            throw new InvalidDimensionException("matMult: Tensors to be multiplied must be of rank 2");
+        }
+        if (m1.getDim(1) != m2.getDim(0)){
+            throw new InvalidDimensionException("#Columns m1 must = #Rows m2");
+        }
+        if (out.getDim(0) != m1.getDim(0) || out.getDim(1) != m2.getDim(1)){
+            throw new InvalidDimensionException("matMult: Output must have #Rows m1 and #Columns m2");
+        }
+        if (!out.isCompact()){
+            throw new InvalidDimensionException("matMult: Output must start at the beginning of its data with no gaps");
+        }
+    }
+
     // Perform elemnts wise matrix multiplication on the given two matricies, store changes in m1
     public static void elMulInc(double[][] m1, double[][] m2) throws InvalidDimensionException{
         if (m1.length != m2.length || m1[0].length != m2[0].length){
@@ -43,6 +77,21 @@ public class NetUtil {
         }
     }
 
+    // Add the values of the contiguous tensor m2 into the contiguous tensor m1
+    public static void elAddInc(Tensor m1, Tensor m2) throws InvalidDimensionException{
+        if (!m1.sameShape(m2)){
+            throw new InvalidDimensionException("elAddInc: Dimensions of tensors to be added must be identical");
+        }
+        if (!m1.isContiguous() || !m2.isContiguous()){
+            throw new InvalidDimensionException("elAddInc: Tensors to be added must be contiguous");
+        }
+        int off1 = m1.getOffset();
+        int off2 = m2.getOffset();
+        for (int i = 0; i < m1.size(); i++){
+            m1.addFlat(off1 + i, m2.getFlat(off2 + i));
+        }
+    }
+
     // Return the transpose of the given matrix
     public static double[][] transpose(double[][] m){
         double[][] ret = new double[m[0].length][m.length];
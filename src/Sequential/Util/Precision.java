@@ -0,0 +1,15 @@
+package Sequential.Util;
+
+/**
+ * Floating point precision used to store the weights, activations, gradients, and optimizer state of a network.
+ */
+public enum Precision {
+    /**
+     * 64 bit floating point values backed by double arrays.
+     */
+    DOUBLE,
+    /**
+     * 32 bit floating point values backed by float arrays. Uses half the memory of DOUBLE.
+     */
+    FLOAT
+}
@@ -3,30 +3,58 @@
 
 package Sequential.Util;
 
-import Sequential.Layers.Layer;
-import Sequential.LossFunctions.LossFunction;
-import Sequential.SequentialExceptions.InvalidDimensionException;
-import Sequential.SequentialExceptions.InvalidOperationException;
-import Sequential.Util.MetricCalculator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 
+// Prints the progress of training. The training thread only adds the loss and accuracy of each batch to
+// primitive totals, and the progress bar and the totals of each epoch are printed by a reporting thread
+// that checks the progress at a fixed interval
 public class PrettyOutput {
+    // Default number of milliseconds between checks of the progress
+    public static final long DEFAULT_REPORT_MILLIS = 100;
+
+    // Shared by every PrettyOutput, so that printing never happens on a training thread
+    private static final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r){
+                    Thread t = new Thread(r, "PrettyOutput");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
     private int epochs;
-    private int batchesCompleted;
     private int numBatches;
-    private double curProgress;
     private int numStars;
+    private long reportMillis;
     private boolean calcAccuracy;
+    // Written by the training thread and read by the reporting thread
+    private volatile int batchesCompleted;
+    // Only used by the training thread
     private double totLoss;
     private double totAccuracy;
-    private MetricCalculator mc;
+    private ScheduledFuture<?> progressTask;
+    // Only used by the reporting thread
+    private int batchesReported;
+    private double curProgress;
+
+    public PrettyOutput(int numBatches, int epochs, int numStars, String[] metrics){
+        this(numBatches, epochs, numStars, metrics, DEFAULT_REPORT_MILLIS);
+    }
 
-    public PrettyOutput(int numBatches, int epochs, int numStars, Layer lastLayer,
-                        String[] metrics, LossFunction lossFunc){
+    public PrettyOutput(int numBatches, int epochs, int numStars, String[] metrics, long reportMillis){
         this.epochs = epochs;
         this.numBatches = numBatches;
         this.numStars = numStars;
+        this.reportMillis = Math.max(1, reportMillis);
 
         for (int i = 0; i < metrics.length; i++){
             if (metrics[i].equalsIgnoreCase("accuracy")){
@@ -34,37 +62,91 @@ public class PrettyOutput {
                 break;
             }
         }
-        mc = new MetricCalculator(lastLayer, lossFunc);
     }
 
     // Print the start of an epoch line
-    public void newEpoch(int curEpoch){
+    public void newEpoch(final int curEpoch){
         batchesCompleted = 0;
-        curProgress = 0;
         totLoss = 0;
         totAccuracy = 0;
-        System.out.print(format("Epoch: (%d/%d) ", curEpoch + 1, epochs));
+        reporter.execute(new Runnable() {
+            @Override
+            public void run(){
+                batchesReported = 0;
+                curProgress = 0;
+                System.out.print(format("Epoch: (%d/%d) ", curEpoch + 1, epochs));
+            }
+        });
+        progressTask = reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run(){
+                reportProgress();
+            }
+        }, reportMillis, reportMillis, TimeUnit.MILLISECONDS);
     }
 
-    // Prints stars to indicate completed batches
-    public void logProgress(double[][] expected) throws InvalidDimensionException, InvalidOperationException {
-        batchesCompleted++;
-        if (batchesCompleted / ((double) numBatches) * 100 > curProgress + (100.0 / numStars)){
-            System.out.print("*");
-            curProgress = batchesCompleted / ((double) numBatches) * 100;
-        }
-        totLoss += mc.calculateBatchLoss(expected);
+    // Add the loss and accuracy of a finished batch to the totals of the epoch
+    public void logProgress(BatchMetrics batch){
+        totLoss += batch.getLoss();
         if (calcAccuracy){
-            totAccuracy += mc.calculateBatchAccuracy(expected);
+            totAccuracy += batch.getAccuracy();
         }
+        batchesCompleted++;
+    }
+
+    // Return the average loss over the batches of the epoch so far
+    public double getLoss(){
+        return totLoss / batchesCompleted;
+    }
+
+    // Return the average accuracy over the batches of the epoch so far, or NaN if it is not a metric
+    public double getAccuracy(){
+        return calcAccuracy ? totAccuracy / batchesCompleted : Double.NaN;
     }
 
-    // Prints the loss for the given epoch
+    // Prints the loss for the given epoch once the progress bar has caught up. The loss and accuracy are
+    // averaged over the batches trained in this epoch, which are fewer than numBatches when it was resumed
     public void finishEpoch(){
-        System.out.print(format(" Loss = %5f", totLoss / numBatches));
-        if (calcAccuracy){
-            System.out.print(format(" Accuracy = %5f", totAccuracy / numBatches));
+        progressTask.cancel(false);
+        final double loss = getLoss();
+        final double accuracy = totAccuracy / batchesCompleted;
+        Future<?> printed = reporter.submit(new Runnable() {
+            @Override
+            public void run(){
+                reportProgress();
+                System.out.print(format(" Loss = %5f", loss));
+                if (calcAccuracy){
+                    System.out.print(format(" Accuracy = %5f", accuracy));
+                }
+                System.out.println();
+            }
+        });
+        // Wait so that anything printed after the epoch comes after its line
+        try {
+            printed.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e){
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Stop checking the progress of the current epoch, such as when training fails partway through it
+    public void close(){
+        if (progressTask != null){
+            progressTask.cancel(false);
+        }
+    }
+
+    // Prints stars to indicate the batches completed since the last report
+    private void reportProgress(){
+        int completed = batchesCompleted;
+        while (batchesReported < completed){
+            batchesReported++;
+            if (batchesReported / ((double) numBatches) * 100 > curProgress + (100.0 / numStars)){
+                System.out.print("*");
+                curProgress = batchesReported / ((double) numBatches) * 100;
+            }
         }
-        System.out.println();
     }
 }
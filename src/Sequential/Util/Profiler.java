@@ -0,0 +1,229 @@
+package Sequential.Util;
+
+import Sequential.Layers.Layer;
+import Sequential.Layers.MaxPool;
+import Sequential.Layers.SoftMaxLayer;
+import Sequential.Layers.TrainableLayer.Trainable;
+import Sequential.Sequential;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * Records the time, the bytes allocated, and an estimate of the floating point operations spent in each layer
+ * of a network while it trains, separately for passing batches forward, passing gradients backward, and
+ * updating parameters. At the end of every epoch a table of the totals is printed, and the totals are
+ * optionally appended to a CSV file, before the totals start over. A network only pays for profiling while
+ * it has a profiler. When training on several threads only the part of each batch passed through the
+ * network itself is profiled, not the parts passed through its replicas.
+ */
+public class Profiler {
+    /**
+     * The phases of training that are profiled separately.
+     */
+    public enum Phase {FORWARD, BACKWARD, UPDATE}
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private ArrayList<Layer> layers;
+    // Row of the totals of each layer
+    private IdentityHashMap<Layer, Integer> rows = new IdentityHashMap<Layer, Integer>();
+    private String csvPath;
+    // Totals of each layer (row) and phase (column)
+    private long[][] calls;
+    private long[][] nanos;
+    private long[][] bytes;
+    private double[][] flops;
+    // Time and allocated bytes of the current thread when the measurement in progress began
+    private long startNanos;
+    private long startBytes;
+
+    /**
+     * Constructs a new Profiler that prints its totals at the end of every epoch.
+     * @param net The compiled network to profile.
+     */
+    public Profiler(Sequential net){
+        this(net, null);
+    }
+
+    /**
+     * Constructs a new Profiler that prints its totals and appends them to a CSV file at the end of every epoch.
+     * @param net The compiled network to profile.
+     * @param csvPath Path to the CSV file, or null to only print the totals.
+     */
+    public Profiler(Sequential net, String csvPath){
+        this.csvPath = csvPath;
+        layers = new ArrayList<Layer>(net.getLayers());
+        for (int i = 0; i < layers.size(); i++){
+            rows.put(layers.get(i), i);
+        }
+        int numPhases = Phase.values().length;
+        calls = new long[layers.size()][numPhases];
+        nanos = new long[layers.size()][numPhases];
+        bytes = new long[layers.size()][numPhases];
+        flops = new double[layers.size()][numPhases];
+    }
+
+    // Start measuring a layer on the current thread
+    public void begin(){
+        startBytes = threads.getCurrentThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    // Finish measuring a forward or backward pass of a batch of the given size through the layer.
+    // Layers that are not part of the profiled network, such as those of replicas, are ignored
+    public void end(Layer layer, Phase phase, int batchSize){
+        long elapsed = System.nanoTime() - startNanos;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - startBytes;
+        Integer row = rows.get(layer);
+        if (row != null){
+            record(row, phase, elapsed, allocated, batchSize * estimateFlops(layer, phase));
+        }
+    }
+
+    // Finish measuring the update of a layer's parameters by an optimizer that spends the given number of
+    // floating point operations on each parameter
+    public void endUpdate(Trainable layer, int flopsPerParam){
+        long elapsed = System.nanoTime() - startNanos;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - startBytes;
+        Integer row = rows.get(layer);
+        if (row != null){
+            record(row, Phase.UPDATE, elapsed, allocated, (double) flopsPerParam * layer.getParams().size());
+        }
+    }
+
+    // Return the total nanoseconds spent in the given layer and phase since the totals last started over
+    public long getNanos(int layer, Phase phase){
+        return nanos[layer][phase.ordinal()];
+    }
+
+    // Return the total bytes allocated in the given layer and phase since the totals last started over
+    public long getBytes(int layer, Phase phase){
+        return bytes[layer][phase.ordinal()];
+    }
+
+    // Return the estimated floating point operations of the given layer and phase since the totals last
+    // started over
+    public double getFlops(int layer, Phase phase){
+        return flops[layer][phase.ordinal()];
+    }
+
+    // Print the totals of the epoch, append them to the CSV file if there is one, and start the totals over.
+    // A failed write is printed rather than thrown so that it does not stop training
+    public void finishEpoch(int epoch){
+        System.out.print(summary(epoch));
+        if (csvPath != null){
+            try {
+                writeCsv(epoch);
+            } catch (IOException e){
+                System.out.println("Profiler: Could not write " + csvPath + ": " + e.getMessage());
+            }
+        }
+        reset();
+    }
+
+    // Return a table of the totals of each layer and phase that has been measured
+    public String summary(int epoch){
+        StringBuilder sb = new StringBuilder();
+        sb.append(format("%nProfile of epoch %d%n", epoch + 1));
+        sb.append(format("%-20s %-9s %8s %11s %11s %12s %10s %10s%n", "Layer", "Phase", "Calls", "Total ms",
+                "ms/call", "MB alloc", "GFLOP", "GFLOP/s"));
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < layers.size(); i++){
+            for (Phase phase : Phase.values()){
+                int p = phase.ordinal();
+                if (calls[i][p] == 0){
+                    continue;
+                }
+                totalNanos += nanos[i][p];
+                totalBytes += bytes[i][p];
+                sb.append(format("%-20s %-9s %8d %11.2f %11.4f %12.2f %10.3f %10.2f%n", layerName(i), phase,
+                        calls[i][p], nanos[i][p] / 1e6, nanos[i][p] / 1e6 / calls[i][p], bytes[i][p] / 1e6,
+                        flops[i][p] / 1e9, nanos[i][p] == 0 ? 0 : flops[i][p] / nanos[i][p]));
+            }
+        }
+        sb.append(format("%-20s %-9s %8s %11.2f %11s %12.2f%n", "Total", "", "", totalNanos / 1e6, "",
+                totalBytes / 1e6));
+        return sb.toString();
+    }
+
+    // Clear the totals of every layer and phase
+    public void reset(){
+        for (int i = 0; i < layers.size(); i++){
+            for (int p = 0; p < calls[i].length; p++){
+                calls[i][p] = 0;
+                nanos[i][p] = 0;
+                bytes[i][p] = 0;
+                flops[i][p] = 0;
+            }
+        }
+    }
+
+    private void record(int row, Phase phase, long elapsed, long allocated, double estimatedFlops){
+        int p = phase.ordinal();
+        calls[row][p]++;
+        nanos[row][p] += elapsed;
+        bytes[row][p] += allocated;
+        flops[row][p] += estimatedFlops;
+    }
+
+    // Append a line for each layer and phase that has been measured
+    private void writeCsv(int epoch) throws IOException{
+        boolean newFile = new File(csvPath).length() == 0;
+        try (PrintWriter out = new PrintWriter(new FileWriter(csvPath, true))){
+            if (newFile){
+                out.println("epoch,layer,name,phase,calls,nanos,bytes,flops");
+            }
+            for (int i = 0; i < layers.size(); i++){
+                for (Phase phase : Phase.values()){
+                    int p = phase.ordinal();
+                    if (calls[i][p] > 0){
+                        out.println((epoch + 1) + "," + i + "," + layers.get(i).getClass().getSimpleName() + "," +
+                                phase + "," + calls[i][p] + "," + nanos[i][p] + "," + bytes[i][p] + "," +
+                                (long) flops[i][p]);
+                    }
+                }
+            }
+        }
+    }
+
+    private String layerName(int i){
+        return i + " " + layers.get(i).getClass().getSimpleName();
+    }
+
+    // Estimate the floating point operations of passing one example through the layer in the given phase.
+    // A trainable layer does a multiply and an add with every parameter at each position of its output, and
+    // its backward pass does so twice, once for the gradients of its input and once for those of its
+    // parameters. Other layers do about one operation per value, except that the backward pass of a softmax
+    // that is not fused with the loss multiplies by its full jacobian
+    private static double estimateFlops(Layer layer, Phase phase){
+        int[] outDim = layer.getOutDim();
+        int outSize = outDim[0] * outDim[1] * outDim[2];
+        if (layer instanceof Trainable){
+            Tensor params = ((Trainable) layer).getParams();
+            double forward = 2.0 * params.size() * (outSize / params.getDim(1));
+            return phase == Phase.FORWARD ? forward : 2 * forward;
+        }
+        if (layer instanceof SoftMaxLayer){
+            if (phase == Phase.BACKWARD && !((SoftMaxLayer) layer).isFusedWithLoss()){
+                return 2.0 * outSize * outSize;
+            }
+            return 3.0 * outSize;
+        }
+        if (layer instanceof MaxPool && phase == Phase.FORWARD){
+            // One comparison for each value of every window
+            int[] poolDim = ((MaxPool) layer).getPoolDim();
+            return (double) outSize * poolDim[0] * poolDim[1];
+        }
+        return outSize;
+    }
+}
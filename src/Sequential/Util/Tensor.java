@@ -0,0 +1,358 @@
+package Sequential.Util;
+
+import Sequential.SequentialExceptions.InvalidDimensionException;
+
+import java.util.Arrays;
+
+/**
+ * Strided view over a single flat array of doubles or floats. Batches of data are passed between layers
+ * as rank 2 tensors (batch x features). Reshaping, slicing, and transposing a tensor returns a
+ * view over the same data instead of a copy.
+ */
+public class Tensor {
+    // Exactly one of data and fData is non null depending on the precision of the tensor
+    private final double[] data;
+    private final float[] fData;
+    private final int offset;
+    private final int[] shape;
+    private final int[] strides;
+
+    /**
+     * Constructs a new tensor of zeros with the given shape.
+     * @param shape The size of each dimension of the tensor.
+     */
+    public Tensor(int... shape){
+        this(Precision.DOUBLE, shape);
+    }
+
+    /**
+     * Constructs a new tensor of zeros with the given precision and shape.
+     * @param precision Whether the tensor is backed by doubles or floats.
+     * @param shape The size of each dimension of the tensor.
+     */
+    public Tensor(Precision precision, int... shape){
+        this(precision == Precision.DOUBLE ? new double[numElements(shape)] : null,
+                precision == Precision.FLOAT ? new float[numElements(shape)] : null,
+                0, Arrays.copyOf(shape, shape.length), rowMajorStrides(shape));
+    }
+
+    /**
+     * Constructs a tensor with the given shape that uses the given array as its data. The array is not copied.
+     * @param data The row major data of the tensor.
+     * @param shape The size of each dimension of the tensor.
+     * @throws InvalidDimensionException
+     */
+    public Tensor(double[] data, int... shape) throws InvalidDimensionException{
+        this(data, null, 0, Arrays.copyOf(shape, shape.length), rowMajorStrides(shape));
+        if (data.length != numElements(shape)){
+            throw new InvalidDimensionException("Tensor: Number of elements in data must match the given shape");
+        }
+    }
+
+    private Tensor(double[] data, float[] fData, int offset, int[] shape, int[] strides){
+        this.data = data;
+        this.fData = fData;
+        this.offset = offset;
+        this.shape = shape;
+        this.strides = strides;
+    }
+
+    // Copy a 2D array into a new rank 2 tensor
+    public static Tensor fromRows(double[][] rows){
+        return fromRows(rows, Precision.DOUBLE);
+    }
+
+    // Copy a 2D array into a new rank 2 tensor with the given precision
+    public static Tensor fromRows(double[][] rows, Precision precision){
+        Tensor ret = new Tensor(precision, rows.length, rows[0].length);
+        for (int i = 0; i < rows.length; i++){
+            ret.setRow(i, rows[i]);
+        }
+        return ret;
+    }
+
+    // Copy a batch of 3D inputs into a new rank 2 tensor with each input flattened in row major order
+    public static Tensor fromBatch(double[][][][] in){
+        return fromBatch(in, Precision.DOUBLE);
+    }
+
+    // Copy a batch of 3D inputs into a new rank 2 tensor with the given precision with each input
+    // flattened in row major order
+    public static Tensor fromBatch(double[][][][] in, Precision precision){
+        int inSize = in[0].length * in[0][0].length * in[0][0][0].length;
+        Tensor ret = new Tensor(precision, in.length, inSize);
+        for (int i = 0; i < in.length; i++){
+            ret.setRow(i, in[i]);
+        }
+        return ret;
+    }
+
+    // Copy the given values into the given row of a rank 2 tensor with contiguous rows
+    public void setRow(int row, double[] vals){
+        copyIn(vals, rowOffset(row));
+    }
+
+    // Copy a 3D input flattened in row major order into the given row of a rank 2 tensor with contiguous rows
+    public void setRow(int row, double[][][] in){
+        int loc = rowOffset(row);
+        for (int j = 0; j < in.length; j++){
+            for (int k = 0; k < in[0].length; k++){
+                copyIn(in[j][k], loc);
+                loc += in[0][0].length;
+            }
+        }
+    }
+
+    // Copy the given values into the underlying data starting at the given location
+    private void copyIn(double[] vals, int loc){
+        if (data != null){
+            System.arraycopy(vals, 0, data, loc, vals.length);
+        } else {
+            for (int i = 0; i < vals.length; i++){
+                fData[loc + i] = (float) vals[i];
+            }
+        }
+    }
+
+    // Return a new tensor of zeros with the given shape and the same precision as this tensor
+    public Tensor like(int... shape){
+        return new Tensor(getPrecision(), shape);
+    }
+
+    // Return a copy of this tensor with the given precision, or this tensor if it already has that precision
+    public Tensor toPrecision(Precision precision){
+        if (precision == getPrecision()){
+            return this;
+        }
+        Tensor src = contiguous();
+        Tensor ret = new Tensor(precision, shape);
+        for (int i = 0; i < ret.size(); i++){
+            ret.setFlat(i, src.getFlat(src.offset + i));
+        }
+        return ret;
+    }
+
+    // Copy this rank 2 tensor into a new 2D array
+    public double[][] toRows(){
+        double[][] ret = new double[shape[0]][shape[1]];
+        for (int i = 0; i < ret.length; i++){
+            for (int j = 0; j < ret[0].length; j++){
+                ret[i][j] = get(i, j);
+            }
+        }
+        return ret;
+    }
+
+    // Return the underlying data of a double precision tensor. Elements of the tensor are not necessarily
+    // stored at the start of the array, see getOffset and getStrides
+    public double[] getData(){
+        return data;
+    }
+
+    // Return the underlying data of a single precision tensor
+    public float[] getFloatData(){
+        return fData;
+    }
+
+    public Precision getPrecision(){
+        return data != null ? Precision.DOUBLE : Precision.FLOAT;
+    }
+
+    // Return the value at the given location of the underlying data, see rowOffset
+    public double getFlat(int loc){
+        return data != null ? data[loc] : fData[loc];
+    }
+
+    // Set the value at the given location of the underlying data, see rowOffset
+    public void setFlat(int loc, double val){
+        if (data != null){
+            data[loc] = val;
+        } else {
+            fData[loc] = (float) val;
+        }
+    }
+
+    // Add to the value at the given location of the underlying data, see rowOffset
+    public void addFlat(int loc, double val){
+        if (data != null){
+            data[loc] += val;
+        } else {
+            fData[loc] += (float) val;
+        }
+    }
+
+    // Return the location of the first element of the tensor in the underlying data
+    public int getOffset(){
+        return offset;
+    }
+
+    public int[] getShape(){
+        return Arrays.copyOf(shape, shape.length);
+    }
+
+    public int[] getStrides(){
+        return Arrays.copyOf(strides, strides.length);
+    }
+
+    // Return the size of the given dimension
+    public int getDim(int dim){
+        return shape[dim];
+    }
+
+    // Return the stride of the given dimension
+    public int getStride(int dim){
+        return strides[dim];
+    }
+
+    public int rank(){
+        return shape.length;
+    }
+
+    // Return the total number of elements in the tensor
+    public int size(){
+        return numElements(shape);
+    }
+
+    // Return the location in the underlying data of the start of the given row
+    public int rowOffset(int row){
+        return offset + row * strides[0];
+    }
+
+    public double get(int i){
+        return getFlat(offset + i * strides[0]);
+    }
+
+    public double get(int i, int j){
+        return getFlat(offset + i * strides[0] + j * strides[1]);
+    }
+
+    public void set(int i, double val){
+        setFlat(offset + i * strides[0], val);
+    }
+
+    public void set(int i, int j, double val){
+        setFlat(offset + i * strides[0] + j * strides[1], val);
+    }
+
+    // Return true if the elements of the tensor are laid out in row major order with no gaps
+    public boolean isContiguous(){
+        int expected = 1;
+        for (int i = shape.length - 1; i >= 0; i--){
+            if (shape[i] != 1 && strides[i] != expected){
+                return false;
+            }
+            expected *= shape[i];
+        }
+        return true;
+    }
+
+    // Return true if this tensor is contiguous and starts at the beginning of its underlying data
+    public boolean isCompact(){
+        return offset == 0 && isContiguous();
+    }
+
+    // Return a view of this tensor with the given shape. Copies only if this tensor is not contiguous
+    public Tensor reshape(int... newShape) throws InvalidDimensionException{
+        if (numElements(newShape) != size()){
+            throw new InvalidDimensionException("Tensor: reshape: Number of elements in input and output must be identical");
+        }
+        Tensor src = contiguous();
+        return new Tensor(src.data, src.fData, src.offset, Arrays.copyOf(newShape, newShape.length), rowMajorStrides(newShape));
+    }
+
+    // Return a view of the rows from start (inclusive) to end (exclusive) along the first dimension
+    public Tensor slice(int start, int end) throws InvalidDimensionException{
+        if (start < 0 || end > shape[0] || start > end){
+            throw new InvalidDimensionException("Tensor: slice: Slice bounds outside of the tensor");
+        }
+        int[] newShape = Arrays.copyOf(shape, shape.length);
+        newShape[0] = end - start;
+        return new Tensor(data, fData, offset + start * strides[0], newShape, Arrays.copyOf(strides, strides.length));
+    }
+
+    // Return a rank 1 view of the given row of a rank 2 tensor
+    public Tensor row(int i){
+        return new Tensor(data, fData, offset + i * strides[0], new int[]{shape[1]}, new int[]{strides[1]});
+    }
+
+    // Return a view of the transpose of a rank 2 tensor
+    public Tensor transpose(){
+        return new Tensor(data, fData, offset, new int[]{shape[1], shape[0]}, new int[]{strides[1], strides[0]});
+    }
+
+    // Return this tensor if it is contiguous, otherwise a contiguous copy of it
+    public Tensor contiguous(){
+        if (isContiguous()){
+            return this;
+        }
+        return copy();
+    }
+
+    // Return a contiguous copy of this tensor
+    public Tensor copy(){
+        Tensor ret = like(shape);
+        int numElements = ret.size();
+        if (isContiguous()){
+            if (data != null){
+                System.arraycopy(data, offset, ret.data, 0, numElements);
+            } else {
+                System.arraycopy(fData, offset, ret.fData, 0, numElements);
+            }
+        } else {
+            int[] index = new int[shape.length];
+            for (int i = 0; i < numElements; i++){
+                int loc = offset;
+                for (int d = 0; d < shape.length; d++){
+                    loc += index[d] * strides[d];
+                }
+                ret.setFlat(i, getFlat(loc));
+                // Advance the multi dimensional index in row major order
+                for (int d = shape.length - 1; d >= 0; d--){
+                    index[d]++;
+                    if (index[d] < shape[d]){
+                        break;
+                    }
+                    index[d] = 0;
+                }
+            }
+        }
+        return ret;
+    }
+
+    // Fill every element of a contiguous tensor with the given value
+    public void fill(double val){
+        if (data != null){
+            Arrays.fill(data, offset, offset + size(), val);
+        } else {
+            Arrays.fill(fData, offset, offset + size(), (float) val);
+        }
+    }
+
+    // Return true if this tensor has the same shape as the given tensor
+    public boolean sameShape(Tensor other){
+        return Arrays.equals(shape, other.shape);
+    }
+
+    @Override
+    public String toString(){
+        return "Tensor" + Arrays.toString(shape) + " " + getPrecision();
+    }
+
+    private static int numElements(int[] shape){
+        int ret = 1;
+        for (int i = 0; i < shape.length; i++){
+            ret *= shape[i];
+        }
+        return ret;
+    }
+
+    private static int[] rowMajorStrides(int[] shape){
+        int[] ret = new int[shape.length];
+        int stride = 1;
+        for (int i = shape.length - 1; i >= 0; i--){
+            ret[i] = stride;
+            stride *= shape[i];
+        }
+        return ret;
+    }
+}
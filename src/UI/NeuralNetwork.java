@@ -3,7 +3,14 @@
 
 package UI;
 
+import Sequential.Data.Dataset;
+import Sequential.Inference.InferenceServer;
+import Sequential.Inference.InferenceSession;
 import Sequential.LossFunctions.LossFunction;
+import Sequential.MatMulBackends.MatMulBackend;
+import Sequential.Monitoring.InferenceMonitor;
+import Sequential.Monitoring.TrainingMonitor;
+import Sequential.NetOps.Checkpointer;
 import Sequential.NetOps.NetworkLoader;
 import Sequential.NetOps.NetworkWriter;
 import Sequential.Optimizers.Optimizer;
@@ -11,6 +18,9 @@ import Sequential.Sequential;
 import Sequential.SequentialExceptions.InvalidDimensionException;
 import Sequential.SequentialExceptions.InvalidNetworkFormatException;
 import Sequential.SequentialExceptions.InvalidOperationException;
+import Sequential.Util.BatchIterator;
+import Sequential.Util.EvaluationResult;
+import Sequential.Util.Precision;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -22,6 +32,8 @@ public class NeuralNetwork {
     Sequential net;
     NetworkWriter netWrite;
     NetworkLoader netLoad;
+    TrainingMonitor trainingMonitor;
+    InferenceMonitor inferenceMonitor;
 
     /**
      * Construct a UI.NeuralNetwork object.
@@ -79,6 +91,28 @@ public class NeuralNetwork {
         net.compile(lossFunc, opt, metrics);
     }
 
+    /**
+     * Sets the loss function, optimizer, metrics, and precision of the network to the given values.
+     * @param lossFunc The loss function to be used by the network.
+     * @param opt The optimizer to be used by the network.
+     * @param metrics The metrics to be used by the network.
+     * @param precision The floating point precision the network should store its weights and activations with.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public void compile(LossFunction lossFunc, Optimizer opt, String[] metrics, Precision precision)
+            throws InvalidOperationException, InvalidDimensionException{
+        net.compile(lossFunc, opt, metrics, precision);
+    }
+
+    /**
+     * Sets the kernel the network uses to multiply matrices.
+     * @param backend The matrix multiplication backend to be used by the network.
+     */
+    public void setMatMulBackend(MatMulBackend backend){
+        net.setMatMulBackend(backend);
+    }
+
     /**
      * Prints predictions for an array of inputs.
      * @param inputs Array of 3D inputs to the network.
@@ -87,6 +121,69 @@ public class NeuralNetwork {
         net.predict(inputs);
     }
 
+    /**
+     * Create a session for predicting with the network from another thread. Sessions share the weights of
+     * the network but keep their own activations, so each thread serving predictions should use its own
+     * session instead of cloning the network. The network should not be trained while sessions are in use.
+     * @return A new session that returns the outputs of the network for batches of inputs.
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public InferenceSession newSession() throws InvalidOperationException, InvalidDimensionException{
+        return net.newSession();
+    }
+
+    /**
+     * Serve predictions from the network over HTTP on localhost. Inputs are POSTed to /predict, one per line,
+     * and concurrent requests are predicted together in batches.
+     * @param port Port to listen on, or 0 for any free port.
+     * @param maxBatchSize Largest number of inputs passed through the network at once.
+     * @param maxWaitMillis Longest time an input waits for others to join its batch, in milliseconds.
+     * @return The running server, which should be closed once it is no longer needed.
+     * @throws IOException
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     */
+    public InferenceServer serve(int port, int maxBatchSize, double maxWaitMillis)
+            throws IOException, InvalidOperationException, InvalidDimensionException{
+        return new InferenceServer(net, port, maxBatchSize, maxWaitMillis);
+    }
+
+    /**
+     * Publish the progress of training and the throughput and latency of predictions through JMX, as the
+     * MBeans Sequential:type=Training,name=&lt;name&gt; and Sequential:type=Inference,name=&lt;name&gt;.
+     * Predictions are monitored for sessions and servers created afterwards. Monitoring carries over to
+     * networks loaded into this object.
+     * @param name Name distinguishing this network from others in the same JVM.
+     * @throws InvalidOperationException If the network is already monitored or the name is taken.
+     */
+    public void monitor(String name) throws InvalidOperationException{
+        if (trainingMonitor != null){
+            throw new InvalidOperationException("Network is already monitored");
+        }
+        TrainingMonitor training = new TrainingMonitor();
+        InferenceMonitor inference = new InferenceMonitor();
+        training.register(name);
+        try {
+            inference.register(name);
+        } catch (InvalidOperationException e){
+            training.unregister();
+            throw e;
+        }
+        trainingMonitor = training;
+        inferenceMonitor = inference;
+        net.setTrainingMonitor(trainingMonitor);
+        net.setInferenceMonitor(inferenceMonitor);
+    }
+
+    /**
+     * Set how often the progress bar is updated while training. Progress is printed from a separate thread,
+     * so the interval does not affect the speed of training.
+     * @param millis Milliseconds between updates of the progress bar.
+     */
+    public void setReportInterval(long millis){
+        net.setReportInterval(millis);
+    }
 
     /**
      * Fit the network to an approximate mapping between the given inputs and outputs.
@@ -102,6 +199,96 @@ public class NeuralNetwork {
         net.fit(x, y, batchSize, epochs);
     }
 
+    /**
+     * Fit the network to an approximate mapping between the given inputs and outputs.
+     * @param x Array of 3D inputs to the network for training.
+     * @param y Array of 1D expected outputs corresponding to the inputs.
+     * @param batchSize Number of inputs that should be in training batches. The last batch of each
+     *                  epoch holds the remaining inputs.
+     * @param epochs Number of times the inputs should be trained on.
+     * @param shuffle Whether the order of the inputs should be shuffled at the start of every epoch.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public void fit (double[][][][] x, double[][] y, int batchSize, int epochs, boolean shuffle)
+            throws InvalidDimensionException, InvalidOperationException{
+        net.fit(x, y, batchSize, epochs, shuffle);
+    }
+
+    /**
+     * Fit the network to an approximate mapping between the inputs and expected outputs of the given data set.
+     * Batches are read from the data set as they are needed.
+     * @param data The examples to train on.
+     * @param batchSize Number of inputs that should be in training batches. The last batch of each
+     *                  epoch holds the remaining inputs.
+     * @param epochs Number of times the inputs should be trained on.
+     * @param shuffle Whether the order of the inputs should be shuffled at the start of every epoch.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public void fit (Dataset data, int batchSize, int epochs, boolean shuffle)
+            throws InvalidDimensionException, InvalidOperationException{
+        net.fit(data, batchSize, epochs, shuffle);
+    }
+
+    /**
+     * Fit the network to an approximate mapping between the inputs and expected outputs given by the batch
+     * iterator. A DataPipeline can be given to prepare upcoming batches on other threads during training.
+     * @param batches Iterator over the batches to train on.
+     * @param epochs Number of times the inputs should be trained on.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public void fit (BatchIterator batches, int epochs)
+            throws InvalidDimensionException, InvalidOperationException{
+        net.fit(batches, epochs);
+    }
+
+    /**
+     * Fit the network while periodically checkpointing its parameters, optimizer state, and position in
+     * the batches. If the checkpointer's file already holds a checkpoint, training resumes from it, so an
+     * interrupted run can be restarted by running the same program again.
+     * @param batches Iterator over the batches to train on. Should be seeded when shuffling so that a
+     *                resumed run sees the same order of examples.
+     * @param epochs Number of times the inputs should be trained on, including any epochs already checkpointed.
+     * @param checkpoints Decides when to checkpoint and where the checkpoint is stored.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     * @throws InvalidNetworkFormatException
+     * @throws IOException
+     */
+    public void fit (BatchIterator batches, int epochs, Checkpointer checkpoints)
+            throws InvalidDimensionException, InvalidOperationException, InvalidNetworkFormatException, IOException{
+        net.fit(batches, epochs, checkpoints);
+    }
+
+
+    /**
+     * Provide performance metrics measuring the networks ability to map the inputs of the given data set to
+     * its expected outputs. Examples are read from the data set in batches as they are needed.
+     * @param data The examples to evaluate the network on.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public void evaluate(Dataset data)
+            throws InvalidDimensionException, InvalidOperationException{
+        net.evaluate(data);
+    }
+
+    /**
+     * Evaluate the network on the examples of the given data set, splitting its batches across threads, and
+     * return the results instead of printing them.
+     * @param data The examples to evaluate the network on.
+     * @param batchSize Number of examples passed through the network at once.
+     * @param numThreads Number of threads evaluating batches at once.
+     * @return The loss, accuracy, confusion matrix, and per class precision and recall of the network.
+     * @throws InvalidDimensionException
+     * @throws InvalidOperationException
+     */
+    public EvaluationResult evaluate(Dataset data, int batchSize, int numThreads)
+            throws InvalidDimensionException, InvalidOperationException{
+        return net.evaluate(data, batchSize, numThreads);
+    }
 
     /**
      * Provide performance metrics measuring the networks ability to map the given inputs to the given outputs.
@@ -143,6 +330,35 @@ public class NeuralNetwork {
             throws FileNotFoundException, InvalidOperationException, InvalidDimensionException, InvalidNetworkFormatException {
         this.net = netLoad.loadNetwork(path);
         this.netWrite = new NetworkWriter(this.net);
+        net.setTrainingMonitor(trainingMonitor);
+        net.setInferenceMonitor(inferenceMonitor);
+    }
+
+    /**
+     * Serializes the network to a binary file. Parameters are stored as raw little endian values in their
+     * current precision, so large networks save and load much faster than with the text format.
+     * @param path Path to the location where the network should be serialized.
+     * @throws IOException
+     */
+    public void saveBinary(String path) throws IOException {
+        netWrite.writeNetworkBinary(path);
+    }
+
+    /**
+     * Reads a network saved with saveBinary from the file specified by the path. The file is memory mapped
+     * and the parameters of each layer are copied out of it in bulk.
+     * @param path Path to the location of serialized network to be read.
+     * @throws IOException
+     * @throws InvalidOperationException
+     * @throws InvalidDimensionException
+     * @throws InvalidNetworkFormatException
+     */
+    public void loadBinary(String path)
+            throws IOException, InvalidOperationException, InvalidDimensionException, InvalidNetworkFormatException {
+        this.net = netLoad.loadNetworkBinary(path);
+        this.netWrite = new NetworkWriter(this.net);
+        net.setTrainingMonitor(trainingMonitor);
+        net.setInferenceMonitor(inferenceMonitor);
     }
 
     /**